@@ -0,0 +1,129 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+// Keep-alive load generator used to compare the jdk and nio HTTP engines.
+//
+//   javac -d out browserautomation/*.java && cp browsers.properties launch-profiles.properties out/
+//   java -Dhttp.engine=nio -Dhttp.backlog=10000 -Dhttp.workers=16 -cp out browserautomation.BrowserAutomationServer
+//   java HttpEngineBenchmark.java localhost 3000 10000 30 /
+//
+// Every connection sends one GET, waits for the full response and sends the next one on the same socket.
+// 10k connections need a matching file descriptor limit (ulimit -n) on both sides.
+public class HttpEngineBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 3000;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        String path = args.length > 4 ? args[4] : "/";
+
+        byte[] request = ("GET " + path + " HTTP/1.1\r\nHost: " + host + "\r\nConnection: keep-alive\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+        Selector selector = Selector.open();
+        InetSocketAddress address = new InetSocketAddress(host, port);
+
+        int failedConnects = 0;
+        for (int i = 0; i < connections; i++) {
+            try {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.connect(address);
+                channel.register(selector, SelectionKey.OP_CONNECT, new Client(request));
+            } catch (IOException e) {
+                failedConnects++;
+            }
+        }
+
+        long completed = 0;
+        long errors = 0;
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        while (System.nanoTime() < end) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Client client = (Client) key.attachment();
+                SocketChannel channel = (SocketChannel) key.channel();
+                try {
+                    if (key.isConnectable()) {
+                        channel.finishConnect();
+                        client.send(key);
+                    } else if (key.isWritable()) {
+                        client.send(key);
+                    } else if (key.isReadable()) {
+                        if (client.read(channel)) {
+                            completed++;
+                            client.send(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    errors++;
+                    key.cancel();
+                    channel.close();
+                }
+            }
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.println("connections: " + connections + " (failed to connect: " + failedConnects + ")");
+        System.out.println("requests:    " + completed + " in " + String.format("%.1f", elapsed) + " s");
+        System.out.println("req/sec:     " + String.format("%.0f", completed / elapsed));
+        System.out.println("errors:      " + errors);
+        selector.close();
+    }
+
+    // Per connection state: the pending request bytes and the response being read
+    static class Client {
+        private ByteBuffer request;
+        private ByteBuffer response = ByteBuffer.allocate(16 * 1024);
+
+        Client(byte[] request) {
+            this.request = ByteBuffer.wrap(request);
+        }
+
+        void send(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            channel.write(request);
+            if (request.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else {
+                request.rewind();
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        // True once a complete Content-Length delimited response has arrived
+        boolean read(SocketChannel channel) throws IOException {
+            if (channel.read(response) < 0) {
+                throw new IOException("closed by server");
+            }
+            String text = new String(response.array(), 0, response.position(), StandardCharsets.ISO_8859_1);
+            int headerEnd = text.indexOf("\r\n\r\n");
+            if (headerEnd < 0) {
+                return false;
+            }
+            int lengthIndex = text.toLowerCase().indexOf("content-length:");
+            if (lengthIndex < 0 || lengthIndex > headerEnd) {
+                throw new IOException("response without Content-Length");
+            }
+            int lineEnd = text.indexOf("\r\n", lengthIndex);
+            int length = Integer.parseInt(text.substring(lengthIndex + 15, lineEnd).trim());
+            if (response.position() < headerEnd + 4 + length) {
+                return false;
+            }
+            response.clear();
+            return true;
+        }
+    }
+}
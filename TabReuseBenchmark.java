@@ -0,0 +1,146 @@
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Time-to-navigation for /open with a cold launch versus reusing the running browser.
+//
+//   javac -d out browserautomation/*.java && cp browsers.properties launch-profiles.properties out/
+//   java -Dbrowser.reuse=true -cp out browserautomation.BrowserAutomationServer
+//   java TabReuseBenchmark.java bench localhost:3000 127.0.0.1:9222 20
+//
+// A navigation counts as done once its url shows up in the DevTools /json/list of the browser.
+// The cold run closes chrome between iterations, so run it on a host with no other chrome in use.
+//
+//   java TabReuseBenchmark.java stand-in 9222
+//
+// starts a local stand-in for the Chrome DevTools HTTP endpoints (/json/new, /json/close, /json/list)
+// so reuse mode can be exercised without a real browser.
+public class TabReuseBenchmark {
+    private static HttpClient client = HttpClient.newHttpClient();
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "bench";
+        if ("stand-in".equals(mode)) {
+            startStandIn(args.length > 1 ? Integer.parseInt(args[1]) : 9222);
+            return;
+        }
+
+        String server = args.length > 1 ? args[1] : "localhost:3000";
+        String devTools = args.length > 2 ? args[2] : "127.0.0.1:9222";
+        int iterations = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        List<Long> cold = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            cold.add(timeNavigation(server, devTools, "http://example.com/cold-" + i, false));
+            get("http://" + server + "/close?app=chrome");
+            Thread.sleep(1000);
+        }
+
+        // Warm up one instance, then every /open reuses it
+        timeNavigation(server, devTools, "http://example.com/warm", true);
+        List<Long> reuse = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            reuse.add(timeNavigation(server, devTools, "http://example.com/reuse-" + i, true));
+        }
+
+        report("cold launch", cold);
+        report("reuse", reuse);
+    }
+
+    // Milliseconds from sending /open until the url is visible in the browser, -1 on timeout
+    private static long timeNavigation(String server, String devTools, String url, boolean reuse) throws Exception {
+        long start = System.nanoTime();
+        get("http://" + server + "/open?app=chrome&reuse=" + reuse + "&url="
+                + URLEncoder.encode(url, StandardCharsets.UTF_8));
+        long deadline = start + 30_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            try {
+                if (get("http://" + devTools + "/json/list").contains(url)) {
+                    return (System.nanoTime() - start) / 1_000_000;
+                }
+            } catch (IOException e) {
+                // Browser not listening yet
+            }
+            Thread.sleep(20);
+        }
+        return -1;
+    }
+
+    private static String get(String uri) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(uri)).GET().build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static void report(String name, List<Long> samples) {
+        List<Long> sorted = new ArrayList<>(samples);
+        sorted.removeIf(sample -> sample < 0);
+        Collections.sort(sorted);
+        if (sorted.isEmpty()) {
+            System.out.println(name + ": no successful navigations");
+            return;
+        }
+        long total = 0;
+        for (long sample : sorted) {
+            total += sample;
+        }
+        System.out.println(name + ": n=" + sorted.size() + " (timeouts " + (samples.size() - sorted.size())
+                + ") mean=" + (total / sorted.size()) + "ms p50=" + sorted.get(sorted.size() / 2) + "ms max="
+                + sorted.get(sorted.size() - 1) + "ms");
+    }
+
+    private static void startStandIn(int port) throws IOException {
+        Map<String, String> targets = Collections.synchronizedMap(new LinkedHashMap<>());
+        AtomicInteger ids = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+
+        server.createContext("/json/new", exchange -> {
+            String id = "STANDIN" + ids.incrementAndGet();
+            // Chrome decodes the query into the target url
+            String url = exchange.getRequestURI().getRawQuery();
+            targets.put(id, url == null ? "about:blank" : URLDecoder.decode(url, StandardCharsets.UTF_8));
+            respond(exchange, 200, target(id, targets.get(id)));
+        });
+        server.createContext("/json/close/", exchange -> {
+            String id = exchange.getRequestURI().getPath().substring("/json/close/".length());
+            boolean closed = targets.remove(id) != null;
+            respond(exchange, closed ? 200 : 404, closed ? "Target is closing" : "No such target id: " + id);
+        });
+        server.createContext("/json/list", exchange -> {
+            StringBuilder json = new StringBuilder("[");
+            synchronized (targets) {
+                for (Map.Entry<String, String> entry : targets.entrySet()) {
+                    if (json.length() > 1)
+                        json.append(",");
+                    json.append(target(entry.getKey(), entry.getValue()));
+                }
+            }
+            respond(exchange, 200, json.append("]").toString());
+        });
+        server.start();
+        System.out.println("DevTools stand-in listening on 127.0.0.1:" + port);
+    }
+
+    private static String target(String id, String url) {
+        return "{\"id\": \"" + id + "\", \"type\": \"page\", \"url\": \"" + url + "\"}";
+    }
+
+    private static void respond(com.sun.net.httpserver.HttpExchange exchange, int code, String body)
+            throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(bytes);
+        os.close();
+    }
+}
@@ -0,0 +1,177 @@
+package browserautomation;
+
+import java.io.*;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.regex.Pattern;
+
+// Files produced by sessions (downloads, screenshots, HAR exports) in the artifact directories configured for
+// their browser. A session is resolved through the browser registry, so app can never name a directory of its
+// own. Credential and state stores are never served, and neither are symlinks or anything they lead to.
+class ArtifactStore {
+    private static final Pattern PRIVATE_FILES = Pattern.compile(
+            "(?i)(cookies.*|login data.*|web data.*|logins\\.json|key[34]\\.db|cert[89]\\.db|.*\\.sqlite(-.*)?)");
+    private static final Set<String> PRECOMPRESSED = new HashSet<>(Arrays.asList(
+            "png", "jpg", "jpeg", "gif", "webp", "zip", "gz", "tgz", "bz2", "xz", "7z", "mp4", "webm", "pdf"));
+
+    private BrowserRegistry browsers;
+
+    public ArtifactStore(BrowserRegistry browsers) {
+        this.browsers = browsers;
+    }
+
+    public boolean hasSession(String browser) {
+        BrowserDescriptor descriptor = browsers.get(browser);
+        return descriptor != null && !descriptor.getArtifactDirs().isEmpty();
+    }
+
+    // Resolve a relative artifact name against the session's artifact directories in order, refusing anything
+    // outside them
+    public File resolve(String browser, String name) {
+        BrowserDescriptor descriptor = browsers.get(browser);
+        if (descriptor == null) {
+            return null;
+        }
+        for (Path dir : descriptor.getArtifactDirs()) {
+            Path file = dir.resolve(name).normalize();
+            if (file.startsWith(dir) && !file.equals(dir) && !isCache(descriptor, dir, file) && !isPrivate(file)
+                    && Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS) && isInside(dir, file)) {
+                return file.toFile();
+            }
+        }
+        return null;
+    }
+
+    // normalize() does not resolve links, so a linked parent directory could still lead out of dir
+    private static boolean isInside(Path dir, Path file) {
+        try {
+            return file.toRealPath().startsWith(dir.toRealPath());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static boolean isPrivate(Path file) {
+        Path name = file.getFileName();
+        return name != null && PRIVATE_FILES.matcher(name.toString()).matches();
+    }
+
+    public String listJson(String browser) throws IOException {
+        BrowserDescriptor descriptor = browsers.get(browser);
+        StringBuilder json = new StringBuilder();
+        json.append("{\n  \"app\": \"").append(browser).append("\",\n  \"artifacts\": [");
+        Set<String> names = new HashSet<>();
+        int count = 0;
+        for (Path dir : descriptor != null ? descriptor.getArtifactDirs() : Collections.<Path>emptyList()) {
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            List<Path> files = new ArrayList<>();
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+                    return isCache(descriptor, dir, path) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    // The walk does not follow links, so a symlink is never a regular file here
+                    if (attrs.isRegularFile() && !isPrivate(path)) {
+                        files.add(path);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            Collections.sort(files);
+            for (Path file : files) {
+                // The first directory holding a name wins, matching resolve
+                String name = dir.relativize(file).toString().replace('\\', '/');
+                if (!names.add(name)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                json.append(count++ > 0 ? ",\n" : "\n");
+                json.append("    {\"name\": \"").append(name)
+                        .append("\", \"size\": ").append(attributes.size())
+                        .append(", \"modified\": \"").append(attributes.lastModifiedTime()).append("\"}");
+            }
+        }
+        json.append(count > 0 ? "\n  " : "");
+        json.append("]\n}");
+        return json.toString();
+    }
+
+    // Cache directories are not artifacts, whether configured as such or named like one inside the profile
+    private static boolean isCache(BrowserDescriptor descriptor, Path dir, Path path) {
+        for (Path cacheDir : descriptor.getCacheDirs()) {
+            if (path.startsWith(cacheDir)) {
+                return true;
+            }
+        }
+        for (Path part : dir.relativize(path)) {
+            if (ProfileStorage.CACHE_DIR_NAMES.contains(part.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Single "bytes=" range as inclusive {start, end}, or null when unsatisfiable
+    static long[] parseRange(String header, long length) {
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? length - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), length - 1);
+            }
+            if (start > end || start >= length) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static boolean isCompressible(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 || !PRECOMPRESSED.contains(name.substring(dot + 1).toLowerCase());
+    }
+
+    static String contentType(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".har") || lower.endsWith(".json")) {
+            return "application/json";
+        } else if (lower.endsWith(".png")) {
+            return "image/png";
+        } else if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (lower.endsWith(".txt") || lower.endsWith(".log")) {
+            return "text/plain";
+        }
+        return "application/octet-stream";
+    }
+}
@@ -0,0 +1,10 @@
+package browserautomation;
+
+// Session artifact listing and download
+class ArtifactsModule implements ServerModule {
+    public void register(Router.Builder routes) {
+        ArtifactStore store = new ArtifactStore(BrowserAutomationServer.getBrowserController().getBrowsers());
+        routes.route("/artifacts", BrowserAutomationServer.wrap("/artifacts",
+                new BrowserAutomationServer.ArtifactsHandler(store)));
+    }
+}
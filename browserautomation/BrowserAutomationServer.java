@@ -0,0 +1,565 @@
+package browserautomation;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+public class BrowserAutomationServer {
+    private static final int PORT = Integer.getInteger("port", 3000);
+    private static final String HTTP_ENGINE = System.getProperty("http.engine", "jdk");
+    private static final int HTTP_BACKLOG = Integer.getInteger("http.backlog", 0);
+    private static final int HTTP_WORKERS = Integer.getInteger("http.workers", 10);
+    private static final int SHUTDOWN_DRAIN_SECONDS = Integer.getInteger("shutdown.drainSeconds", 5);
+    private static final int SHUTDOWN_TEARDOWN_SECONDS = Integer.getInteger("shutdown.teardownSeconds", 5);
+    // Feature modules by name; core is always enabled, -Dmodules picks the rest
+    private static final Map<String, ServerModule> MODULES = new LinkedHashMap<>();
+    static {
+        MODULES.put("core", new CoreModule());
+        MODULES.put("state", new StateModule());
+        MODULES.put("artifacts", new ArtifactsModule());
+        MODULES.put("cache", new CacheModule());
+        MODULES.put("metrics", new MetricsModule());
+    }
+    private static BrowserController browserController;
+    private static ClusterCoordinator coordinator;
+
+    public static void main(String[] args) throws IOException {
+        HttpTransport server = HttpTransport.create(HTTP_ENGINE, new InetSocketAddress(PORT), HTTP_BACKLOG);
+
+        // Unknown paths fall through to the home page, as the old "/" context did
+        Router.Builder routes = new Router.Builder(new HomeHandler());
+        List<String> enabled;
+        if ("coordinator".equals(System.getProperty("mode"))) {
+            // Coordinator: same API, every call is forwarded to a worker node
+            coordinator = new ClusterCoordinator(System.getProperty("workers", ""));
+            coordinator.start();
+            new CoordinatorModule().register(routes);
+            enabled = Collections.singletonList("coordinator");
+        } else {
+            enabled = enabledModules(System.getProperty("modules", String.join(",", MODULES.keySet())));
+            browserController = new BrowserController();
+            for (String name : enabled) {
+                MODULES.get(name).register(routes);
+            }
+        }
+        Router router = routes.build();
+        server.createContext("/", router);
+        System.out.println("Modules " + enabled + ", routes " + router.getPaths());
+
+        server.setExecutor(Tracer.timingQueue(Executors.newFixedThreadPool(HTTP_WORKERS)));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(server), "shutdown"));
+
+        System.out.println("Browser Automation Server listening on port " + PORT + " (" + HTTP_ENGINE + " engine"
+                + (coordinator != null ? ", coordinator" : "") + ")");
+    }
+
+    // Module names from a comma separated list, core first and always present
+    private static List<String> enabledModules(String names) {
+        List<String> enabled = new ArrayList<>();
+        enabled.add("core");
+        for (String name : names.split(",")) {
+            name = name.trim();
+            if (name.isEmpty() || enabled.contains(name)) {
+                continue;
+            }
+            if (!MODULES.containsKey(name)) {
+                throw new IllegalArgumentException("unknown module " + name + ", expected one of " + MODULES.keySet());
+            }
+            enabled.add(name);
+        }
+        return enabled;
+    }
+
+    // Stop accepting and drain in-flight requests, close every tracked browser in parallel, then flush traces
+    // and the final metrics. Runs from the shutdown hook, so a SIGTERM during a deploy exits cleanly.
+    private static void shutdown(HttpTransport server) {
+        System.out.println("Shutting down");
+        long start = System.nanoTime();
+        server.stop(SHUTDOWN_DRAIN_SECONDS);
+        long drained = System.nanoTime();
+
+        int closed = 0;
+        if (coordinator != null) {
+            coordinator.stop();
+        } else {
+            closed = browserController.shutdown(SHUTDOWN_TEARDOWN_SECONDS);
+        }
+        long tornDown = System.nanoTime();
+
+        Tracer.flush();
+        if (browserController != null) {
+            System.out.print(browserController.getMetrics());
+        }
+        System.out.flush();
+        long flushed = System.nanoTime();
+
+        System.out.println("Shutdown complete: drain " + TimeUnit.NANOSECONDS.toMillis(drained - start)
+                + " ms, teardown " + TimeUnit.NANOSECONDS.toMillis(tornDown - drained) + " ms (" + closed
+                + " instances), flush " + TimeUnit.NANOSECONDS.toMillis(flushed - tornDown) + " ms");
+        System.out.flush();
+    }
+
+    // Controller the worker modules register their routes against; null in coordinator mode
+    static BrowserController getBrowserController() {
+        return browserController;
+    }
+
+    // Tracing and deadline handling around a route handler
+    static HttpHandler wrap(String route, HttpHandler handler) {
+        return new TracingHandler(route, new DeadlineHandler(route, handler));
+    }
+
+    // Query params of the request being handled, parsed once by DeadlineHandler and reused by the route handler
+    private static final ThreadLocal<Map<String, String>> REQUEST_PARAMS = new ThreadLocal<>();
+
+    // Parse query parameters from URL
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> params = REQUEST_PARAMS.get();
+        if (params != null) {
+            return params;
+        }
+        params = new HashMap<>();
+        try (Span span = Tracer.start("parseQuery")) {
+            parseQueryInto(exchange.getRequestURI().getRawQuery(), params);
+            span.setAttribute("params", params.size());
+        }
+        return params;
+    }
+
+    private static void parseQueryInto(String query, Map<String, String> params) {
+        if (query != null) {
+            String[] pairs = query.split("&");
+            for (String pair : pairs) {
+                String[] keyValue = pair.split("=", 2);
+                if (keyValue.length == 2) {
+                    try {
+                        params.put(keyValue[0], URLDecoder.decode(keyValue[1], "UTF-8"));
+                    } catch (UnsupportedEncodingException e) {
+                        params.put(keyValue[0], keyValue[1]);
+                    }
+                }
+            }
+        }
+    }
+
+    // Send HTTP response
+    private static void sendResponse(HttpExchange exchange, String response) throws IOException {
+        sendResponse(exchange, 200, "text/plain", response);
+    }
+
+    // Send JSON response
+    private static void sendJsonResponse(HttpExchange exchange, String response) throws IOException {
+        sendResponse(exchange, 200, "application/json", response);
+    }
+
+    private static void sendResponse(HttpExchange exchange, int code, String contentType, String response)
+            throws IOException {
+        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+    }
+
+    // Send binary response
+    private static void sendBytes(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        sendBytes(exchange, 200, contentType, body);
+    }
+
+    private static void sendBytes(HttpExchange exchange, int code, String contentType, byte[] body)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+    }
+
+    // Wraps a route handler in a root span, continuing the trace from an incoming traceparent header
+    static class TracingHandler implements HttpHandler {
+        private String route;
+        private HttpHandler handler;
+
+        TracingHandler(String route, HttpHandler handler) {
+            this.route = route;
+            this.handler = handler;
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            Span span = Tracer.startRequest(exchange.getRequestMethod() + " " + route,
+                    exchange.getRequestHeaders().getFirst("traceparent"));
+            span.setAttribute("http.route", route);
+            span.setAttribute("http.target", exchange.getRequestURI().toString());
+            exchange.getResponseHeaders().set("traceparent", span.traceparent());
+            try {
+                handler.handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                span.setError(e.toString());
+                throw e;
+            } finally {
+                span.close();
+                Tracer.setCurrent(null);
+            }
+        }
+    }
+
+    // Sets the request deadline from the timeout param or X-Request-Timeout header (milliseconds), capped at
+    // -Dtimeout.max.<route>, falling back to -Dtimeout.<route>, and answers 504 with the partial status when the
+    // controller runs out of time. Only the server side settings can turn the deadline off.
+    static class DeadlineHandler implements HttpHandler {
+        private String route;
+        private HttpHandler handler;
+        private long defaultMillis;
+        private long maxMillis;
+
+        DeadlineHandler(String route, HttpHandler handler) {
+            this.route = route;
+            this.handler = handler;
+            this.defaultMillis = Long.getLong("timeout." + route.substring(1), Deadline.defaultMillis(route));
+            this.maxMillis = Long.getLong("timeout.max." + route.substring(1), Deadline.maxMillis(route));
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            long millis = defaultMillis;
+            Map<String, String> params = parseQuery(exchange);
+            String requested = params.get("timeout");
+            if (requested == null) {
+                requested = exchange.getRequestHeaders().getFirst("X-Request-Timeout");
+            }
+            if (requested != null) {
+                try {
+                    millis = Long.parseLong(requested.trim());
+                } catch (NumberFormatException e) {
+                    millis = 0;
+                }
+                if (millis <= 0) {
+                    sendResponse(exchange, 400, "text/plain", "invalid timeout: " + requested
+                            + ", expected a positive number of milliseconds");
+                    return;
+                }
+                if (maxMillis > 0) {
+                    millis = Math.min(millis, maxMillis);
+                }
+            }
+
+            Deadline.start(millis);
+            REQUEST_PARAMS.set(params);
+            try {
+                handler.handle(exchange);
+            } catch (DeadlineExceededException e) {
+                System.out.println(route + " deadline exceeded: " + e.getMessage());
+                Span span = Tracer.current();
+                if (span != null) {
+                    span.setError("deadline exceeded");
+                }
+                sendResponse(exchange, 504, "text/plain", "deadline of " + millis + " ms exceeded; " + e.getMessage());
+            } finally {
+                REQUEST_PARAMS.remove();
+                Deadline.clear();
+            }
+        }
+    }
+
+    // Home page handler
+    static class HomeHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("home page req");
+            sendResponse(exchange, "Browser Automation Server - Hello World!");
+        }
+    }
+
+    // Open browser handler
+    static class OpenHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("/open req");
+            Map<String, String> params = parseQuery(exchange);
+            System.out.println("Query params: " + params);
+
+            String browser = BrowserController.instanceKey(params.get("app"), params.get("session"));
+            String url = params.get("url");
+            String profile = params.get("profile");
+            Boolean reuse = params.containsKey("reuse") ? Boolean.valueOf(params.get("reuse")) : null;
+            boolean replaceTab = "replace".equals(params.get("tab"));
+
+            BrowserResult result;
+            try (Span span = Tracer.start("BrowserController.openBrowser")) {
+                result = browserController.openBrowser(browser, url, profile, reuse, replaceTab);
+                span.setAttribute("app", browser).setAttribute("result.code", result.getCode());
+            }
+            sendResponse(exchange, result.getStatus());
+        }
+    }
+
+    // Close browser handler
+    static class CloseHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("/close req");
+            Map<String, String> params = parseQuery(exchange);
+            System.out.println("Query params: " + params);
+
+            String browser = BrowserController.instanceKey(params.get("app"), params.get("session"));
+            BrowserResult result;
+            try (Span span = Tracer.start("BrowserController.closeBrowser")) {
+                result = browserController.closeBrowser(browser);
+                span.setAttribute("app", browser).setAttribute("result.code", result.getCode());
+            }
+            sendResponse(exchange, result.getStatus());
+        }
+    }
+
+    // Clear cache handler
+    static class ClearHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("/clear req");
+            Map<String, String> params = parseQuery(exchange);
+            System.out.println("Query params: " + params);
+
+            String browser = BrowserController.instanceKey(params.get("app"), params.get("session"));
+            BrowserResult result;
+            try (Span span = Tracer.start("BrowserController.clearCacheAndHistory")) {
+                result = browserController.clearCacheAndHistory(browser);
+                span.setAttribute("app", browser).setAttribute("result.code", result.getCode());
+            }
+            sendResponse(exchange, result.getStatus());
+        }
+    }
+
+    // Current page handler
+    static class CurrentPageHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("/current-page req");
+            Map<String, String> params = parseQuery(exchange);
+            System.out.println("Query params: " + params);
+
+            String browser = BrowserController.instanceKey(params.get("app"), params.get("session"));
+            BrowserResult result;
+            try (Span span = Tracer.start("BrowserController.getCurrentPage")) {
+                result = browserController.getCurrentPage(browser);
+                span.setAttribute("app", browser);
+            }
+            sendResponse(exchange, result.getStatus());
+        }
+    }
+
+    // Get state handler
+    static class GetStateHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("/getState req");
+            Map<String, String> params = parseQuery(exchange);
+            System.out.println("Query params: " + params);
+
+            String browser = BrowserController.instanceKey(params.get("app"), params.get("session"));
+            String format = params.getOrDefault("format", "json");
+            String since = params.get("since");
+
+            BrowserStateResult result;
+            try (Span span = Tracer.start("BrowserController.getBrowserState")) {
+                span.setAttribute("app", browser);
+                result = since != null ? browserController.getBrowserStateSince(Long.parseLong(since.trim()))
+                        : browserController.getBrowserState(browser);
+            } catch (NumberFormatException e) {
+                sendResponse(exchange, 400, "text/plain", "invalid since version: " + since);
+                return;
+            }
+
+            if ("json".equals(format)) {
+                sendJsonResponse(exchange, result.toJson());
+            } else if ("cbor".equals(format)) {
+                sendBytes(exchange, "application/cbor", result.toCbor());
+            } else {
+                sendResponse(exchange, result.toString());
+            }
+        }
+    }
+
+    // Evict handler: trims a browser's cache by age and/or to a size budget
+    static class EvictHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("/evict req");
+            Map<String, String> params = parseQuery(exchange);
+            System.out.println("Query params: " + params);
+
+            String browser = params.get("app");
+            String olderThan = params.get("olderThan");
+            String maxBytes = params.get("maxBytes");
+
+            BrowserResult result;
+            try (Span span = Tracer.start("BrowserController.evictCache")) {
+                result = browserController.evictCache(browser, olderThan, maxBytes);
+                span.setAttribute("app", browser).setAttribute("result.code", result.getCode());
+            }
+            sendResponse(exchange, result.getStatus());
+        }
+    }
+
+    // Artifacts handler: lists a session's files, or streams one with Range and gzip support
+    static class ArtifactsHandler implements HttpHandler {
+        private ArtifactStore artifactStore;
+
+        ArtifactsHandler(ArtifactStore artifactStore) {
+            this.artifactStore = artifactStore;
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println("/artifacts req");
+            Map<String, String> params = parseQuery(exchange);
+            System.out.println("Query params: " + params);
+
+            String browser = params.get("app");
+            if (browser == null || browser.isEmpty()) {
+                sendResponse(exchange, 400, "text/plain", "app param required");
+                return;
+            }
+            if (!artifactStore.hasSession(browser)) {
+                sendResponse(exchange, 404, "text/plain", "unknown app or no artifact directories: " + browser);
+                return;
+            }
+            String name = params.get("file");
+            if (name == null) {
+                sendJsonResponse(exchange, artifactStore.listJson(browser));
+                return;
+            }
+
+            File file = artifactStore.resolve(browser, name);
+            if (file == null || !file.isFile()) {
+                sendResponse(exchange, 404, "text/plain", "artifact not found: " + name);
+                return;
+            }
+            streamArtifact(exchange, file);
+        }
+
+        private void streamArtifact(HttpExchange exchange, File file) throws IOException {
+            long length = file.length();
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", ArtifactStore.contentType(file.getName()));
+            headers.set("Accept-Ranges", "bytes");
+
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            long start = 0;
+            long end = length - 1;
+            int code = 200;
+            if (range != null) {
+                long[] bounds = ArtifactStore.parseRange(range, length);
+                if (bounds == null) {
+                    headers.set("Content-Range", "bytes */" + length);
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                }
+                start = bounds[0];
+                end = bounds[1];
+                code = 206;
+                headers.set("Content-Range", "bytes " + start + "-" + end + "/" + length);
+            }
+            long count = end - start + 1;
+
+            String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean gzip = code == 200 && acceptEncoding != null && acceptEncoding.contains("gzip")
+                    && ArtifactStore.isCompressible(file.getName());
+            headers.set("Vary", "Accept-Encoding");
+
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            if (gzip) {
+                // Compressed size is unknown up front, so the body is chunked
+                headers.set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                try (FileChannel in = channel;
+                        OutputStream out = new GZIPOutputStream(exchange.getResponseBody(), 64 * 1024)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                    while (in.read(buffer) > 0) {
+                        out.write(buffer.array(), 0, buffer.position());
+                        buffer.clear();
+                    }
+                }
+                return;
+            }
+
+            exchange.sendResponseHeaders(code, count > 0 ? count : -1);
+            if (count <= 0) {
+                channel.close();
+                exchange.close();
+            } else if (exchange instanceof NioExchange) {
+                // NIO engine: transferTo goes straight from the page cache to the socket
+                ((NioExchange) exchange).sendFile(channel, start, count);
+            } else {
+                try (FileChannel in = channel;
+                        OutputStream out = exchange.getResponseBody()) {
+                    WritableByteChannel target = Channels.newChannel(out);
+                    long position = start;
+                    while (position <= end) {
+                        position += in.transferTo(position, end - position + 1, target);
+                    }
+                }
+            }
+        }
+    }
+
+    // Metrics handler in Prometheus text format
+    static class MetricsHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            sendResponse(exchange, 200, "text/plain; version=0.0.4", browserController.getMetrics());
+        }
+    }
+
+    // Capacity handler, polled by the cluster coordinator
+    static class CapacityHandler implements HttpHandler {
+        public void handle(HttpExchange exchange) throws IOException {
+            int capacity = browserController.getMaxInstances();
+            int live = browserController.getLiveInstanceCount();
+            int free = Math.max(0, capacity - live);
+            StringBuilder instances = new StringBuilder();
+            for (String instance : browserController.getLiveInstances()) {
+                instances.append(instances.length() > 0 ? ", " : "").append("\"").append(instance).append("\"");
+            }
+            sendJsonResponse(exchange, "{\"capacity\": " + capacity + ", \"live\": " + live
+                    + ", \"free\": " + free + ", \"instances\": [" + instances + "]}");
+        }
+    }
+
+    // Coordinator handler: forwards a route to the owning worker, or to all workers for /getState
+    static class CoordinatorHandler implements HttpHandler {
+        private String route;
+
+        CoordinatorHandler(String route) {
+            this.route = route;
+        }
+
+        public void handle(HttpExchange exchange) throws IOException {
+            System.out.println(route + " req (coordinator)");
+            String query = exchange.getRequestURI().getRawQuery();
+            Map<String, String> params = parseQuery(exchange);
+            String instanceKey = ClusterCoordinator.instanceKey(params);
+
+            if ("/getState".equals(route) && instanceKey == null) {
+                ClusterCoordinator.ForwardResult aggregated = coordinator.aggregateState(query,
+                        params.getOrDefault("format", "json"));
+                sendBytes(exchange, aggregated.code, aggregated.contentType, aggregated.body);
+                return;
+            }
+
+            if (instanceKey == null) {
+                sendResponse(exchange, 400, "text/plain", "app param required");
+                return;
+            }
+
+            // Bodies are passed through untouched, so binary formats such as CBOR survive the hop
+            ClusterCoordinator.ForwardResult result = coordinator.forward(route, query, instanceKey);
+            sendBytes(exchange, result.code, result.contentType, result.body);
+        }
+    }
+}
\ No newline at end of file
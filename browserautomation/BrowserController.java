@@ -0,0 +1,845 @@
+package browserautomation;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Main browser controller class
+class BrowserController {
+    private static final int EXIT_HISTORY_SIZE = Integer.getInteger("exit.history", 50);
+    private static final Pattern DEVTOOLS_ID = Pattern.compile("\"id\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern DEVTOOLS_TARGET = Pattern.compile("\\{[^{}]*\\}");
+    private static final Pattern DEVTOOLS_URL = Pattern.compile("\"url\"\\s*:\\s*\"([^\"]*)\"");
+    private static final long CHECK_TIMEOUT_MILLIS = 5000;
+    private static final Pattern SESSION_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    // Each app:session instance gets its own profile under here, so sessions of one browser never share state
+    private static final Path SESSION_ROOT = Paths.get(System.getProperty("session.root",
+            Paths.get(System.getProperty("java.io.tmpdir"), "browser-sessions").toString()));
+
+    // Live instances only; the exit watcher moves finished ones into exitHistory
+    private Map<String, Process> browserProcesses = new ConcurrentHashMap<>();
+    private Map<String, String> browserUrls = new ConcurrentHashMap<>();
+    private Map<String, String> browserStartTimes = new ConcurrentHashMap<>();
+    private Map<String, String> browserProfiles = new ConcurrentHashMap<>();
+    private Map<String, List<BrowserTab>> browserTabs = new ConcurrentHashMap<>();
+    private Deque<ExitedInstance> exitHistory = new ArrayDeque<>();
+    // Last /open, /current-page or /getState?app= per live instance, in nanoTime
+    private Map<String, Long> lastActivity = new ConcurrentHashMap<>();
+    // Why the server ended a process; anything not in here exited on its own
+    private Map<Process, String> exitReasons = new ConcurrentHashMap<>();
+    private Map<String, Long> sessionEvictions = new ConcurrentHashMap<>();
+    // Live instances per host, counting every app:session instance; the least recently used go first beyond it
+    private int maxInstances = Integer.getInteger("capacity", 10);
+    // State version, bumped on every change to a tracked instance; removals leave a bounded set of tombstones
+    private AtomicLong stateVersion = new AtomicLong();
+    private Map<String, Long> instanceVersions = new ConcurrentHashMap<>();
+    private Map<String, Long> instanceAddedVersions = new ConcurrentHashMap<>();
+    private Map<String, Long> removedVersions = new ConcurrentHashMap<>();
+    private volatile long oldestDeltaVersion = 0;
+    private long idleTtlNanos = TimeUnit.SECONDS.toNanos(Long.getLong("session.idleTtlSeconds", 1800));
+    private BrowserRegistry browsers = BrowserRegistry.load(System.getProperty("browsers"),
+            System.getProperty("os.name").toLowerCase());
+    private LaunchProfileRegistry launchProfiles = LaunchProfileRegistry.load(System.getProperty("launch.profiles"));
+    // Reuse mode: /open on a running instance opens a tab through its remote control channel
+    private boolean reuseByDefault = Boolean.getBoolean("browser.reuse");
+    private String devToolsHost = System.getProperty("chrome.debugHost", "127.0.0.1");
+    private HttpClient devToolsClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    // A usage change of a tracked instance's profile is a state change, so since= pollers see profileBytes move
+    private ProfileStorage profileStorage = ProfileStorage.forBrowsers(browsers.all(), browser -> {
+        if (browserProcesses.containsKey(browser)) {
+            bumpVersion(browser);
+        }
+    });
+    private ScheduledExecutorService idleReaper = startIdleReaper();
+
+    public BrowserResult openBrowser(String browserInput, String url) {
+        return openBrowser(browserInput, url, null, null, false);
+    }
+
+    public BrowserResult openBrowser(String browserInput, String url, String profileName, Boolean reuse,
+            boolean replaceTab) {
+        String status = "";
+        BrowserDescriptor browser = browsers.get(appOf(browserInput));
+
+        if (browser == null) {
+            status = "browser param invalid. Taking firefox as default browser.";
+            System.out.println(status);
+        }
+
+        if (url == null || url.isEmpty()) {
+            System.err.println("Please enter a URL, e.g. \"http://www.browserstack.com\"");
+            status += " invalid url";
+            return new BrowserResult(0, status);
+        }
+
+        // Unknown or missing app: nothing to launch, and no instance key to look up
+        if (browser == null) {
+            status += " No platform detected or unsupported";
+            return new BrowserResult(0, status);
+        }
+        // A launcher hands the url to whichever instance is already running, so there is no process to isolate
+        if (isSession(browserInput) && !hasValidSession(browserInput)) {
+            status += " invalid session, expected 1-64 letters, digits, '-' or '_'";
+            return new BrowserResult(0, status);
+        }
+        if (isSession(browserInput) && browser.isLauncher()) {
+            status += " sessions are not supported for " + browser.getDisplayName() + " on this platform";
+            return new BrowserResult(0, status);
+        }
+
+        boolean reuseInstance = reuse != null ? reuse : reuseByDefault;
+        Process running = browserProcesses.get(browserInput);
+        touch(browserInput);
+        if (reuseInstance && isAlive(browserInput, running)) {
+            String tabStatus = openInRunningBrowser(browser, browserInput, url, replaceTab);
+            Deadline.current().check(status + (tabStatus != null ? " " + tabStatus : " tab not opened"));
+            if (tabStatus != null) {
+                return new BrowserResult(1, status + " " + tabStatus);
+            }
+            System.out.println("Reuse failed for " + browserInput + ", launching a new instance");
+        }
+
+        LaunchProfile profile = launchProfiles.get(profileName);
+        if (profile == null) {
+            status += " unknown launch profile: " + profileName;
+            return new BrowserResult(0, status);
+        }
+
+        makeRoomFor(browserInput);
+        Deadline.current().check(status + " not launched");
+
+        List<String> args = profile.buildArgs(browser);
+        if (isSession(browserInput)) {
+            Path sessionDir = sessionDir(browserInput);
+            try {
+                Files.createDirectories(sessionDir);
+            } catch (IOException e) {
+                status += " Failed to create session profile: " + e.getMessage();
+                return new BrowserResult(0, status);
+            }
+            args.addAll(browser.profileDirArgs(sessionDir));
+        }
+        if (reuseInstance && browser.getDevToolsPort() > 0) {
+            // Sessions of one browser cannot share its port; Chrome picks a free one and writes DevToolsActivePort
+            args.add("--remote-debugging-port=" + (isSession(browserInput) ? 0 : browser.getDevToolsPort()));
+        }
+        List<String> command = browser.launchCommand(url, args);
+        if (command == null) {
+            status += " No platform detected or unsupported";
+            return new BrowserResult(0, status);
+        }
+
+        try {
+            System.out.println("exec command: " + command + " (profile " + profile.getName() + ")");
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.environment().putAll(profile.getEnvironment());
+            Process process;
+            try (Span span = Tracer.start("exec")) {
+                span.setAttribute("argv", command);
+                process = builder.start();
+                span.setAttribute("pid", process.pid());
+            }
+            String startTime = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            browserProcesses.put(browserInput, process);
+            browserUrls.put(browserInput, url);
+            browserStartTimes.put(browserInput, startTime);
+            browserProfiles.put(browserInput, profile.getName());
+            List<BrowserTab> tabs = new CopyOnWriteArrayList<>();
+            tabs.add(new BrowserTab("initial", url));
+            browserTabs.put(browserInput, tabs);
+            touch(browserInput);
+            long version = bumpVersion(browserInput);
+            instanceAddedVersions.put(browserInput, version);
+            removedVersions.remove(browserInput);
+            if (!browser.isLauncher()) {
+                watchExit(browserInput, process, url, startTime, profile.getName());
+            }
+            status += " Success execution";
+            return new BrowserResult(1, status);
+        } catch (IOException e) {
+            status += " Failed to execute command: " + e.getMessage();
+            return new BrowserResult(0, status);
+        }
+    }
+
+    public BrowserResult closeBrowser(String browserInput) {
+        return closeBrowser(browserInput, "closed");
+    }
+
+    private BrowserResult closeBrowser(String browserInput, String reason) {
+        String status = "browser killed";
+        BrowserDescriptor browser = browsers.get(appOf(browserInput));
+
+        if (browser == null) {
+            status = "browser param invalid.";
+            System.out.println(status);
+            return new BrowserResult(0, status);
+        }
+
+        System.out.println(":test: " + browser.getDisplayName() + " kill");
+
+        try {
+            // The kill command matches every process of the browser, so a session only ends its own tree
+            List<String> killCommand = isSession(browserInput) ? null : browser.getKillCommand();
+            if (killCommand != null) {
+                try (Span span = Tracer.start("kill")) {
+                    span.setAttribute("argv", killCommand);
+                    new ProcessBuilder(killCommand).start();
+                }
+            }
+
+            // Also terminate stored process if exists, the exit watcher records it in the history
+            Process process = browserProcesses.get(browserInput);
+            if (process != null) {
+                exitReasons.put(process, reason);
+                try (Span span = Tracer.start("kill")) {
+                    span.setAttribute("pid", process.pid());
+                    // The tracked process tree first; the kill command only catches what was started elsewhere
+                    process.descendants().forEach(ProcessHandle::destroy);
+                    process.destroy();
+                }
+                if (browser.isLauncher()) {
+                    // No exit watcher for launcher-started instances, the kill command ended the browser
+                    reapLaunched(browserInput, process, exitReasons.remove(process));
+                }
+                removeLiveEntry(browserInput, process);
+            }
+
+        } catch (IOException e) {
+            status += " Error: " + e.getMessage();
+        }
+
+        return new BrowserResult(1, status);
+    }
+
+    public BrowserResult clearCacheAndHistory(String browserInput) {
+        String status = "Cache and history cleared";
+        BrowserDescriptor browser = browsers.get(appOf(browserInput));
+
+        if (browser == null) {
+            status = "browser param invalid.";
+            return new BrowserResult(0, status);
+        }
+        if (isSession(browserInput) && !hasValidSession(browserInput)) {
+            return new BrowserResult(0, "invalid session: " + browserInput);
+        }
+        if (!browser.canClear() && !isSession(browserInput)) {
+            status = "Unsupported browser for cache clearing: " + browserInput;
+            return new BrowserResult(0, status);
+        }
+
+        try {
+            // First close the browser to ensure files are not in use
+            Process process = browserProcesses.get(browserInput);
+            closeBrowser(browserInput);
+
+            // Wait up to 2 s for the browser to exit, no longer than the deadline allows
+            try (Span span = Tracer.start("wait-for-exit")) {
+                long waitMillis = Deadline.current().boundedMillis(2000);
+                span.setAttribute("wait.millis", waitMillis);
+                waitForBrowserExit(browserInput, process, waitMillis);
+            }
+            Deadline.current().check("browser closed, cache not cleared");
+
+            try (Span span = Tracer.start("delete")) {
+                // A session's whole profile is its own, the shared profile only loses what the clear rules match
+                int removed = isSession(browserInput) ? clearSession(browserInput) : browser.clearData();
+                span.setAttribute("files", removed);
+                System.out.println("Cleared " + removed + " files of " + browser.getDisplayName());
+            }
+
+        } catch (DeadlineExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            status = "Error clearing cache: " + e.getMessage();
+            return new BrowserResult(0, status);
+        }
+
+        return new BrowserResult(1, status);
+    }
+
+    // olderThan is in seconds, maxBytes accepts K/M/G suffixes; at least one is required
+    // Works on the browser's shared profile; session profiles are dropped whole by /clear
+    public BrowserResult evictCache(String browserInput, String olderThan, String maxBytes) {
+        browserInput = appOf(browserInput);
+        if (browsers.get(browserInput) == null) {
+            return new BrowserResult(0, "browser param invalid.");
+        }
+        long olderThanMillis;
+        long budget;
+        try {
+            olderThanMillis = olderThan != null ? TimeUnit.SECONDS.toMillis(Long.parseLong(olderThan.trim())) : -1;
+            budget = maxBytes != null ? parseBytes(maxBytes) : -1;
+        } catch (NumberFormatException e) {
+            return new BrowserResult(0, "invalid olderThan or maxBytes: " + e.getMessage());
+        }
+        if (olderThanMillis < 0 && budget < 0) {
+            return new BrowserResult(0, "olderThan or maxBytes param required");
+        }
+
+        ProfileStorage.Eviction eviction;
+        try (Span span = Tracer.start("delete")) {
+            eviction = profileStorage.evict(browserInput, olderThanMillis, budget);
+            span.setAttribute("files", eviction.files).setAttribute("bytes", eviction.bytes);
+        }
+        Deadline.current().check("evicted " + eviction.files + " cache files (" + eviction.bytes
+                + " bytes) before the deadline");
+        String status = "Evicted " + eviction.files + " cache files (" + eviction.bytes + " bytes), profile now "
+                + eviction.remaining + " bytes";
+        if (budget >= 0 && eviction.remaining > budget) {
+            status += ", still over budget of " + budget + " bytes after removing all evictable cache";
+        }
+        System.out.println(status);
+        return new BrowserResult(1, status);
+    }
+
+    private static long parseBytes(String value) {
+        String trimmed = value.trim().toUpperCase();
+        long multiplier = 1;
+        if (trimmed.endsWith("K")) {
+            multiplier = 1024L;
+        } else if (trimmed.endsWith("M")) {
+            multiplier = 1024L * 1024;
+        } else if (trimmed.endsWith("G")) {
+            multiplier = 1024L * 1024 * 1024;
+        }
+        if (multiplier > 1) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return Long.parseLong(trimmed.trim()) * multiplier;
+    }
+
+    public BrowserResult getCurrentPage(String browserInput) {
+        String status = "Current page detection not fully implemented";
+        touch(browserInput);
+
+        // This is a simplified implementation
+        // In a real scenario, you might need to use browser debugging protocols
+        // or read browser history/session files
+
+        try {
+            BrowserDescriptor browser = browsers.get(appOf(browserInput));
+            if (browser != null && BrowserDescriptor.FIREFOX.equals(browser.getFamily())) {
+                status = getCurrentFirefoxPage();
+            } else if (browser != null && BrowserDescriptor.CHROMIUM.equals(browser.getFamily())) {
+                status = getCurrentChromePage();
+            } else {
+                status = "Unsupported browser for page detection: " + browserInput;
+            }
+        } catch (Exception e) {
+            status = "Error getting current page: " + e.getMessage();
+        }
+
+        return new BrowserResult(1, status);
+    }
+
+    // Open url in the running instance; returns null when the instance cannot be reached
+    private String openInRunningBrowser(BrowserDescriptor browser, String browserInput, String url,
+            boolean replaceTab) {
+        List<BrowserTab> tabs = browserTabs.computeIfAbsent(browserInput, k -> new CopyOnWriteArrayList<>());
+        // The new tab command reaches the browser's default instance, never a session
+        List<String> newTab = isSession(browserInput) ? null : browser.newTabCommand(url);
+        try {
+            int port = devToolsPort(browserInput, browser);
+            if (port > 0) {
+                // Encoded so a #fragment or characters illegal in a URI survive; DevTools decodes the query
+                HttpResponse<String> response = devToolsClient.send(
+                        devToolsRequest(port, "/json/new?" + URLEncoder.encode(url, StandardCharsets.UTF_8))
+                                .PUT(HttpRequest.BodyPublishers.noBody()).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                Matcher id = DEVTOOLS_ID.matcher(response.body());
+                if (response.statusCode() != 200 || !id.find()) {
+                    return null;
+                }
+                if (replaceTab && !tabs.isEmpty()) {
+                    BrowserTab previous = tabs.get(tabs.size() - 1);
+                    // The tab opened at launch has no id of ours; it stays tracked unless DevTools lists it
+                    String previousId = "initial".equals(previous.getId())
+                            ? findTargetId(port, previous.getUrl(), id.group(1)) : previous.getId();
+                    if (previousId != null) {
+                        devToolsClient.send(devToolsRequest(port, "/json/close/" + previousId).GET().build(),
+                                HttpResponse.BodyHandlers.discarding());
+                        tabs.remove(previous);
+                    }
+                }
+                tabs.add(new BrowserTab(id.group(1), url));
+            } else if (newTab != null) {
+                // e.g. Firefox forwards --new-tab to the running instance over its remote service and exits
+                Process remote = new ProcessBuilder(newTab).start();
+                if (!Deadline.current().waitFor(remote, 10000) || remote.exitValue() != 0) {
+                    return null;
+                }
+                tabs.add(new BrowserTab("tab-" + (tabs.size() + 1), url));
+            } else {
+                return null;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Remote control of " + browserInput + " failed: " + e.getMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        browserUrls.put(browserInput, url);
+        bumpVersion(browserInput);
+        return (replaceTab ? "Navigated" : "Opened new tab") + " in running " + browserInput;
+    }
+
+    // Id of the page target showing url, other than the one just opened, or null when there is none
+    private String findTargetId(int port, String url, String exceptId) throws IOException, InterruptedException {
+        HttpResponse<String> response = devToolsClient.send(devToolsRequest(port, "/json/list").GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            return null;
+        }
+        Matcher target = DEVTOOLS_TARGET.matcher(response.body());
+        while (target.find()) {
+            Matcher id = DEVTOOLS_ID.matcher(target.group());
+            Matcher targetUrl = DEVTOOLS_URL.matcher(target.group());
+            if (!target.group().contains("\"page\"") || !id.find() || !targetUrl.find()
+                    || id.group(1).equals(exceptId)) {
+                continue;
+            }
+            // Chrome reports the url normalized, e.g. with a trailing slash after the host
+            String listed = targetUrl.group(1);
+            if (listed.equals(url) || listed.equals(url + "/")) {
+                return id.group(1);
+            }
+        }
+        return null;
+    }
+
+    private HttpRequest.Builder devToolsRequest(int port, String path) {
+        return HttpRequest.newBuilder(URI.create("http://" + devToolsHost + ":" + port + path))
+                .timeout(Duration.ofMillis(Math.max(1, Deadline.current().boundedMillis(5000))));
+    }
+
+    private void touch(String browserInput) {
+        if (browserInput != null && browserProcesses.containsKey(browserInput)) {
+            lastActivity.put(browserInput, System.nanoTime());
+        }
+    }
+
+    // Enforce the instance cap before a launch by closing the least recently used other instances
+    private synchronized void makeRoomFor(String browserInput) {
+        if (isAlive(browserInput, browserProcesses.get(browserInput))) {
+            return;
+        }
+        while (getLiveInstanceCount() >= maxInstances) {
+            String oldest = null;
+            long oldestActivity = Long.MAX_VALUE;
+            for (String browser : browserProcesses.keySet()) {
+                long activity = lastActivity.getOrDefault(browser, Long.MIN_VALUE);
+                if (!browser.equals(browserInput) && activity < oldestActivity) {
+                    oldest = browser;
+                    oldestActivity = activity;
+                }
+            }
+            if (oldest == null) {
+                return;
+            }
+            evict(oldest, "lru-evicted");
+        }
+    }
+
+    // Also polls launcher-started instances, so it runs even when idle eviction is off
+    private ScheduledExecutorService startIdleReaper() {
+        ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idle-session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = idleTtlNanos > 0 ? Math.max(1, Math.min(30, TimeUnit.NANOSECONDS.toSeconds(idleTtlNanos) / 4))
+                : 30;
+        reaper.scheduleWithFixedDelay(this::reapIdleSessions, period, period, TimeUnit.SECONDS);
+        return reaper;
+    }
+
+    private void reapIdleSessions() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Process> entry : browserProcesses.entrySet()) {
+            String browser = entry.getKey();
+            Long activity = lastActivity.get(browser);
+            if (idleTtlNanos > 0 && activity != null && now - activity > idleTtlNanos) {
+                evict(browser, "idle-evicted");
+            } else if (isLauncher(browser) && !isBrowserRunning(browser)) {
+                reapLaunched(browser, entry.getValue(), null);
+                removeLiveEntry(browser, entry.getValue());
+            }
+        }
+    }
+
+    private boolean isLauncher(String browserInput) {
+        BrowserDescriptor browser = browsers.get(appOf(browserInput));
+        return browser != null && browser.isLauncher();
+    }
+
+    // The tracked process for most browsers; a launcher-started instance counts as alive while it is tracked,
+    // since its launcher exits right away. The reaper drops it once the check command no longer finds the browser.
+    private boolean isAlive(String browserInput, Process process) {
+        return process != null && (process.isAlive() || isLauncher(browserInput));
+    }
+
+    private void evict(String browserInput, String reason) {
+        System.out.println("Evicting " + browserInput + " (" + reason + ")");
+        sessionEvictions.merge(reason, 1L, Long::sum);
+        closeBrowser(browserInput, reason);
+    }
+
+    // Close every tracked instance in parallel and wait for them to exit, force killing stragglers.
+    // Returns how many instances were closed.
+    public int shutdown(int timeoutSeconds) {
+        if (idleReaper != null) {
+            idleReaper.shutdownNow();
+        }
+        Map<String, Process> live = new HashMap<>(browserProcesses);
+        if (live.isEmpty()) {
+            return 0;
+        }
+        ExecutorService teardown = Executors.newFixedThreadPool(live.size());
+        List<CompletableFuture<Process>> exits = new ArrayList<>();
+        for (Map.Entry<String, Process> entry : live.entrySet()) {
+            CompletableFuture.runAsync(() -> closeBrowser(entry.getKey(), "shutdown"), teardown);
+            exits.add(entry.getValue().onExit());
+        }
+        try {
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0])).get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            for (Process process : live.values()) {
+                if (process.isAlive()) {
+                    System.out.println("Force killing pid " + process.pid());
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // onExit futures do not fail
+        }
+        teardown.shutdownNow();
+        return live.size();
+    }
+
+    public BrowserRegistry getBrowsers() {
+        return browsers;
+    }
+
+    public int getMaxInstances() {
+        return maxInstances;
+    }
+
+    public String getMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        metrics.append("# TYPE browser_instances_live gauge\n");
+        metrics.append("browser_instances_live ").append(getLiveInstanceCount()).append("\n");
+        metrics.append("# TYPE browser_instances_max gauge\n");
+        metrics.append("browser_instances_max ").append(maxInstances).append("\n");
+        metrics.append("# TYPE browser_session_evictions_total counter\n");
+        for (String reason : new String[] { "idle-evicted", "lru-evicted" }) {
+            metrics.append("browser_session_evictions_total{reason=\"").append(reason).append("\"} ")
+                    .append(sessionEvictions.getOrDefault(reason, 0L)).append("\n");
+        }
+        return metrics.toString();
+    }
+
+    // Reap the instance as soon as its process exits, whether closed, crashed or quit by the user
+    private void watchExit(String browserInput, Process process, String url, String startTime, String profile) {
+        process.onExit().thenAccept(exited -> {
+            String lastUrl = browserUrls.getOrDefault(browserInput, url);
+            removeLiveEntry(browserInput, exited);
+            String reason = exitReasons.remove(exited);
+            recordExit(browserInput, exited.pid(), startTime, exited.exitValue(), lastUrl, profile, reason);
+        });
+    }
+
+    // History entry for a launcher-started instance, taken before its live entry is removed. The exit code is
+    // the launcher's, or -1 while it is still running.
+    private void reapLaunched(String browserInput, Process process, String reason) {
+        if (browserProcesses.get(browserInput) != process) {
+            return;
+        }
+        recordExit(browserInput, process.pid(), browserStartTimes.getOrDefault(browserInput, "unknown"),
+                process.isAlive() ? -1 : process.exitValue(), browserUrls.getOrDefault(browserInput, "none"),
+                browserProfiles.getOrDefault(browserInput, "none"), reason);
+    }
+
+    private void recordExit(String browserInput, long pid, String startTime, int exitCode, String lastUrl,
+            String profile, String reason) {
+        ExitedInstance instance = new ExitedInstance(browserInput, pid, startTime,
+                LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME), exitCode, lastUrl,
+                profile, reason != null ? reason : "exited");
+        synchronized (exitHistory) {
+            if (exitHistory.size() >= EXIT_HISTORY_SIZE) {
+                exitHistory.removeFirst();
+            }
+            exitHistory.addLast(instance);
+        }
+        System.out.println(browserInput + " (pid " + pid + ") exited with code " + exitCode);
+    }
+
+    // Only drop the maps if they still belong to this process and not a newer launch
+    private void removeLiveEntry(String browserInput, Process process) {
+        if (browserProcesses.remove(browserInput, process)) {
+            browserUrls.remove(browserInput);
+            browserStartTimes.remove(browserInput);
+            browserProfiles.remove(browserInput);
+            browserTabs.remove(browserInput);
+            lastActivity.remove(browserInput);
+            instanceVersions.remove(browserInput);
+            instanceAddedVersions.remove(browserInput);
+            recordRemoval(browserInput);
+        }
+    }
+
+    private long bumpVersion(String browserInput) {
+        long version = stateVersion.incrementAndGet();
+        instanceVersions.put(browserInput, version);
+        return version;
+    }
+
+    private synchronized void recordRemoval(String browserInput) {
+        removedVersions.put(browserInput, stateVersion.incrementAndGet());
+        if (removedVersions.size() > EXIT_HISTORY_SIZE) {
+            // Drop the oldest tombstone; deltas from before it can no longer be answered
+            String oldest = Collections.min(removedVersions.entrySet(), Map.Entry.comparingByValue()).getKey();
+            Long dropped = removedVersions.remove(oldest);
+            if (dropped != null) {
+                oldestDeltaVersion = Math.max(oldestDeltaVersion, dropped);
+            }
+        }
+    }
+
+    public List<String> getLiveInstances() {
+        List<String> live = new ArrayList<>();
+        for (Map.Entry<String, Process> entry : browserProcesses.entrySet()) {
+            if (isAlive(entry.getKey(), entry.getValue())) {
+                live.add(entry.getKey());
+            }
+        }
+        return live;
+    }
+
+    public int getLiveInstanceCount() {
+        int live = 0;
+        for (Map.Entry<String, Process> entry : browserProcesses.entrySet()) {
+            if (isAlive(entry.getKey(), entry.getValue())) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    public BrowserStateResult getBrowserState(String specificBrowser) {
+        BrowserStateResult stateResult = new BrowserStateResult();
+        stateResult.setVersion(stateVersion.get());
+
+        if (specificBrowser != null && !specificBrowser.isEmpty()) {
+            // Get state for specific browser
+            touch(specificBrowser);
+            addBrowserStateInfo(stateResult, specificBrowser);
+        } else {
+            // Get state for all known browsers
+            Set<String> allBrowsers = new HashSet<>();
+            allBrowsers.addAll(browserProcesses.keySet());
+            allBrowsers.addAll(browserUrls.keySet());
+            allBrowsers.addAll(browserStartTimes.keySet());
+
+            // Also check for common browsers even if not in our maps
+            allBrowsers.add("chrome");
+            allBrowsers.add("firefox");
+
+            int collected = 0;
+            for (String browser : allBrowsers) {
+                Deadline.current().check("state collected for " + collected + " of " + allBrowsers.size() + " instances");
+                addBrowserStateInfo(stateResult, browser);
+                collected++;
+            }
+        }
+
+        stateResult.setSessionEvictions(sessionEvictions);
+        synchronized (exitHistory) {
+            for (ExitedInstance instance : exitHistory) {
+                if (specificBrowser == null || specificBrowser.isEmpty() || specificBrowser.equals(instance.getBrowser())) {
+                    stateResult.addExitedInstance(instance);
+                }
+            }
+        }
+
+        return stateResult;
+    }
+
+    // Only the tracked instances added, changed or removed after the given version.
+    // Falls back to the full state when that version is older than the retained tombstones.
+    public BrowserStateResult getBrowserStateSince(long since) {
+        if (since < oldestDeltaVersion) {
+            return getBrowserState(null);
+        }
+        BrowserStateResult stateResult = new BrowserStateResult();
+        stateResult.setVersion(stateVersion.get());
+        stateResult.setSince(since);
+        for (Map.Entry<String, Long> entry : instanceVersions.entrySet()) {
+            if (entry.getValue() > since) {
+                addBrowserStateInfo(stateResult, entry.getKey());
+                if (instanceAddedVersions.getOrDefault(entry.getKey(), 0L) > since) {
+                    stateResult.markAdded(entry.getKey());
+                }
+            }
+        }
+        for (Map.Entry<String, Long> entry : removedVersions.entrySet()) {
+            if (entry.getValue() > since && !instanceVersions.containsKey(entry.getKey())) {
+                stateResult.addRemovedInstance(entry.getKey());
+            }
+        }
+        return stateResult;
+    }
+
+    private void addBrowserStateInfo(BrowserStateResult stateResult, String browser) {
+        Process process = browserProcesses.get(browser);
+        boolean isActive = isAlive(browser, process);
+
+        // Try to detect if browser is running even if not in our process map
+        if (!isActive && !isSession(browser)) {
+            isActive = isBrowserRunning(browser);
+        }
+
+        String processId = "unknown";
+        if (process != null) {
+            try {
+                processId = String.valueOf(process.pid());
+            } catch (Exception e) {
+                processId = "unavailable";
+            }
+        }
+
+        String startTime = browserStartTimes.getOrDefault(browser, "unknown");
+        String lastUrl = browserUrls.getOrDefault(browser, "none");
+        String status = isActive ? "running" : "stopped";
+        String profile = browserProfiles.getOrDefault(browser, "none");
+        List<BrowserTab> tabs = new ArrayList<>(browserTabs.getOrDefault(browser, Collections.emptyList()));
+        // Session profiles are temporary and not tracked, only the browser's shared profile is
+        long profileBytes = isSession(browser) ? 0 : profileStorage.getUsage(browser);
+
+        BrowserInstanceState instanceState = new BrowserInstanceState(
+                isActive, processId, startTime, lastUrl, status, profile, tabs, profileBytes);
+
+        stateResult.addBrowserInstance(browser, instanceState);
+    }
+
+    // The tracked process if there is one, otherwise poll the process table until the browser is gone
+    private void waitForBrowserExit(String browserInput, Process process, long millis) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        if (process != null) {
+            process.waitFor(millis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (isSession(browserInput)) {
+            return;
+        }
+        while (System.nanoTime() < end && isBrowserRunning(browserInput)) {
+            Thread.sleep(100);
+        }
+    }
+
+    private boolean isBrowserRunning(String browser) {
+        try {
+            BrowserDescriptor descriptor = browsers.get(appOf(browser));
+            List<String> checkCommand = descriptor != null ? descriptor.getCheckCommand() : null;
+            if (checkCommand != null) {
+                Process checkProcess = new ProcessBuilder(checkCommand).start();
+                try (Span span = Tracer.start("wait-for-exit")) {
+                    span.setAttribute("argv", checkCommand);
+                    // Also called by the reaper, which has no deadline; a hung check must not block it
+                    if (!Deadline.current().waitFor(checkProcess, CHECK_TIMEOUT_MILLIS)) {
+                        return false;
+                    }
+                }
+                return checkProcess.exitValue() == 0;
+            }
+        } catch (Exception e) {
+            // Ignore errors in process checking
+        }
+        return false;
+    }
+
+    // Instance key: the app alone for the browser's default instance, or app:session for one of several isolated
+    // instances of it. Workers key every map by it and the coordinator routes on it.
+    static String instanceKey(String app, String session) {
+        if (app == null || app.isEmpty()) {
+            return null;
+        }
+        return session == null || session.isEmpty() ? app : app + ":" + session;
+    }
+
+    static String appOf(String instanceKey) {
+        int colon = instanceKey == null ? -1 : instanceKey.indexOf(':');
+        return colon < 0 ? instanceKey : instanceKey.substring(0, colon);
+    }
+
+    private static boolean isSession(String instanceKey) {
+        return instanceKey != null && instanceKey.indexOf(':') >= 0;
+    }
+
+    // The session part names a directory, so it is checked before any path is built from it
+    private static boolean hasValidSession(String instanceKey) {
+        return SESSION_ID.matcher(instanceKey.substring(instanceKey.indexOf(':') + 1)).matches();
+    }
+
+    private static Path sessionDir(String instanceKey) {
+        int colon = instanceKey.indexOf(':');
+        return SESSION_ROOT.resolve(instanceKey.substring(0, colon)).resolve(instanceKey.substring(colon + 1));
+    }
+
+    private static int clearSession(String instanceKey) throws IOException {
+        Path dir = sessionDir(instanceKey);
+        return Files.exists(dir) ? BrowserDescriptor.deleteTree(dir) : 0;
+    }
+
+    // The browser's fixed DevTools port, or the one a session's Chrome picked and wrote to its profile
+    private static int devToolsPort(String instanceKey, BrowserDescriptor browser) {
+        if (browser.getDevToolsPort() <= 0 || !isSession(instanceKey)) {
+            return browser.getDevToolsPort();
+        }
+        try {
+            List<String> lines = Files.readAllLines(sessionDir(instanceKey).resolve("DevToolsActivePort"));
+            return lines.isEmpty() ? 0 : Integer.parseInt(lines.get(0).trim());
+        } catch (IOException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private String getCurrentFirefoxPage() {
+        // Simplified implementation - in reality, you'd need to read session files
+        // or use Firefox's remote debugging protocol
+        return "Firefox current page detection requires reading sessionstore.js or using debugging API";
+    }
+
+    private String getCurrentChromePage() {
+        // Simplified implementation - in reality, you'd need to use Chrome DevTools
+        // Protocol
+        return "Chrome current page detection requires Chrome DevTools Protocol or reading session files";
+    }
+}
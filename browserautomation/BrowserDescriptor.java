@@ -0,0 +1,283 @@
+package browserautomation;
+
+import java.io.*;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+// One supported browser, resolved for the current platform when the registry is loaded
+class BrowserDescriptor {
+    public static final String CHROMIUM = "chromium";
+    public static final String FIREFOX = "firefox";
+    private static final String ARGS = "{args}";
+    private static final String URL = "{url}";
+
+    private String id;
+    private String displayName;
+    private String family;
+    private boolean headlessOnly;
+    private boolean launcher;
+    private int devToolsPort;
+    private List<String> launch;
+    private List<String> newTab;
+    private List<String> kill;
+    private List<String> check;
+    private List<Path> dataDirs;
+    private List<Path> cacheDirs;
+    private List<Path> artifactDirs;
+    private List<ClearRule> clearRules = new ArrayList<>();
+
+    // A /clear glob split into the literal directory it starts from and a matcher for the rest
+    static class ClearRule {
+        Path base;
+        PathMatcher matcher;
+
+        ClearRule(Path home, String glob) {
+            String[] parts = glob.replace('\\', '/').split("/");
+            int literal = 0;
+            while (literal < parts.length && !parts[literal].matches(".*[*?\\[{].*")) {
+                literal++;
+            }
+            base = home.resolve(String.join("/", Arrays.copyOfRange(parts, 0, literal))).normalize();
+            if (literal < parts.length) {
+                matcher = FileSystems.getDefault().getPathMatcher(
+                        "glob:" + String.join("/", Arrays.copyOfRange(parts, literal, parts.length)));
+            }
+        }
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getFamily() {
+        return family;
+    }
+
+    public boolean isHeadlessOnly() {
+        return headlessOnly;
+    }
+
+    // True when the launch argv starts a launcher (open -a, cmd /c start) that exits once the browser is up
+    public boolean isLauncher() {
+        return launcher;
+    }
+
+    // 0 when the browser cannot be driven over DevTools
+    public int getDevToolsPort() {
+        return devToolsPort;
+    }
+
+    public List<String> getKillCommand() {
+        return kill;
+    }
+
+    public List<String> getCheckCommand() {
+        return check;
+    }
+
+    public List<Path> getDataDirs() {
+        return dataDirs;
+    }
+
+    public List<Path> getCacheDirs() {
+        return cacheDirs;
+    }
+
+    public List<Path> getArtifactDirs() {
+        return artifactDirs;
+    }
+
+    public boolean canClear() {
+        return !clearRules.isEmpty();
+    }
+
+    // Launch argv for url, null when the browser has no launch template on this platform
+    public List<String> launchCommand(String url, List<String> args) {
+        return expand(launch, url, args);
+    }
+
+    // Argv pointing the browser at a profile directory of its own, so several instances can run side by side
+    public List<String> profileDirArgs(Path dir) {
+        if (FIREFOX.equals(family)) {
+            return Arrays.asList("-profile", dir.toString(), "-no-remote");
+        }
+        return Collections.singletonList("--user-data-dir=" + dir);
+    }
+
+    // Argv handing url to the running instance, null when the browser has no such remote
+    public List<String> newTabCommand(String url) {
+        return expand(newTab, url, Collections.emptyList());
+    }
+
+    private static List<String> expand(List<String> template, String url, List<String> args) {
+        if (template == null) {
+            return null;
+        }
+        List<String> command = new ArrayList<>(template.size() + args.size());
+        for (String token : template) {
+            if (ARGS.equals(token)) {
+                command.addAll(args);
+            } else if (URL.equals(token)) {
+                command.add(url);
+            } else {
+                command.add(token);
+            }
+        }
+        return command;
+    }
+
+    // Delete everything matched by the clear rules; returns the number of files and directories removed
+    public int clearData() throws IOException {
+        int[] removed = new int[1];
+        for (ClearRule rule : clearRules) {
+            if (!Files.exists(rule.base, LinkOption.NOFOLLOW_LINKS)) {
+                continue;
+            }
+            if (rule.matcher == null) {
+                removed[0] += deleteTree(rule.base);
+                continue;
+            }
+            Files.walkFileTree(rule.base, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!dir.equals(rule.base) && rule.matcher.matches(rule.base.relativize(dir))) {
+                        removed[0] += deleteTree(dir);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (rule.matcher.matches(rule.base.relativize(file)) && Files.deleteIfExists(file)) {
+                        removed[0]++;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return removed[0];
+    }
+
+    static int deleteTree(Path root) throws IOException {
+        int[] removed = new int[1];
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (Files.deleteIfExists(file)) {
+                    removed[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (Files.deleteIfExists(dir)) {
+                    removed[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return removed[0];
+    }
+
+    // Build a descriptor from "browser.<id>.*" keys; "browser.<id>.<platform>.<key>" wins over the plain key
+    static BrowserDescriptor fromProperties(String id, String platform, Properties props, Path home) {
+        BrowserDescriptor browser = new BrowserDescriptor();
+        browser.id = id;
+        browser.displayName = property(props, id, platform, "name", id);
+        browser.family = property(props, id, platform, "family", CHROMIUM);
+        if (!CHROMIUM.equals(browser.family) && !FIREFOX.equals(browser.family)) {
+            throw new IllegalArgumentException("unknown family " + browser.family);
+        }
+        browser.headlessOnly = Boolean.parseBoolean(property(props, id, platform, "headlessOnly", "false"));
+        browser.launcher = Boolean.parseBoolean(property(props, id, platform, "launcher", "false"));
+        browser.devToolsPort = Integer.parseInt(property(props, id, platform, "devtoolsPort", "0").trim());
+        browser.launch = tokenize(property(props, id, platform, "launch", null));
+        browser.newTab = tokenize(property(props, id, platform, "newTab", null));
+        browser.kill = tokenize(property(props, id, platform, "kill", null));
+        browser.check = tokenize(property(props, id, platform, "check", null));
+        browser.dataDirs = resolveAll(home, property(props, id, platform, "dataDirs", null));
+        browser.cacheDirs = resolveAll(home, property(props, id, platform, "cacheDirs", null));
+        // Nothing is served unless explicitly configured; the profile itself holds cookies and saved passwords
+        browser.artifactDirs = resolveAll(home, property(props, id, platform, "artifactDirs", null));
+        for (String glob : splitList(property(props, id, platform, "clear", null))) {
+            browser.clearRules.add(new ClearRule(home, glob));
+        }
+        return browser;
+    }
+
+    private static String property(Properties props, String id, String platform, String key, String fallback) {
+        String value = props.getProperty("browser." + id + "." + platform + "." + key);
+        return value != null ? value : props.getProperty("browser." + id + "." + key, fallback);
+    }
+
+    private static List<String> splitList(String value) {
+        List<String> items = new ArrayList<>();
+        if (value != null) {
+            for (String item : value.split(",")) {
+                if (!item.trim().isEmpty()) {
+                    items.add(item.trim());
+                }
+            }
+        }
+        return items;
+    }
+
+    private static List<Path> resolveAll(Path home, String value) {
+        List<Path> paths = new ArrayList<>();
+        for (String item : splitList(value)) {
+            paths.add(home.resolve(item).normalize());
+        }
+        return paths;
+    }
+
+    // Whitespace separated argv, double quotes group an argument containing spaces
+    private static List<String> tokenize(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        boolean inToken = false;
+        for (char c : value.trim().toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+                inToken = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quote in " + value);
+        }
+        if (inToken) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+}
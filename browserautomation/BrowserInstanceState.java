@@ -0,0 +1,60 @@
+package browserautomation;
+
+import java.util.*;
+
+// Browser instance state class
+class BrowserInstanceState {
+    private boolean active;
+    private String processId;
+    private String startTime;
+    private String lastUrl;
+    private String status;
+    private String profile;
+    private List<BrowserTab> tabs;
+    private long profileBytes;
+
+    public BrowserInstanceState(boolean active, String processId, String startTime, String lastUrl, String status,
+            String profile, List<BrowserTab> tabs, long profileBytes) {
+        this.active = active;
+        this.processId = processId;
+        this.startTime = startTime;
+        this.lastUrl = lastUrl;
+        this.status = status;
+        this.profile = profile;
+        this.tabs = tabs;
+        this.profileBytes = profileBytes;
+    }
+
+    // Getters
+    public boolean isActive() {
+        return active;
+    }
+
+    public String getProcessId() {
+        return processId;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public String getLastUrl() {
+        return lastUrl;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public List<BrowserTab> getTabs() {
+        return tabs;
+    }
+
+    public long getProfileBytes() {
+        return profileBytes;
+    }
+}
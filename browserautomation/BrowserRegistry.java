@@ -0,0 +1,70 @@
+package browserautomation;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Browser descriptors loaded once from a properties file and resolved for the current platform
+class BrowserRegistry {
+    private Map<String, BrowserDescriptor> browsers = new HashMap<>();
+
+    // path is an explicit -Dbrowsers file or null for the shipped defaults. Without any browser every /open
+    // would fail, so that stops the server at startup instead.
+    public static BrowserRegistry load(String path, String osName) {
+        BrowserRegistry registry = new BrowserRegistry();
+        Properties props = new Properties();
+        try (InputStream in = openConfig(path, "browsers.properties")) {
+            if (in == null) {
+                throw new IllegalStateException("No browsers.properties in the working directory or on the classpath");
+            }
+            props.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read browsers: " + e.getMessage(), e);
+        }
+
+        String platform = osName.contains("win") ? "windows" : osName.contains("mac") ? "mac" : "linux";
+        Path home = Paths.get(System.getProperty("user.home"));
+        Set<String> ids = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            String[] parts = key.split("\\.", 3);
+            if (parts.length == 3 && "browser".equals(parts[0])) {
+                ids.add(parts[1]);
+            }
+        }
+        for (String id : ids) {
+            try {
+                registry.browsers.put(id, BrowserDescriptor.fromProperties(id, platform, props, home));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Skipping browser " + id + ": " + e.getMessage());
+            }
+        }
+        if (registry.browsers.isEmpty()) {
+            throw new IllegalStateException("No browsers configured for " + platform + " in "
+                    + (path != null ? path : "browsers.properties"));
+        }
+        System.out.println("Loaded browsers for " + platform + ": " + registry.browsers.keySet());
+        return registry;
+    }
+
+    // An explicit path must exist. Otherwise the name in the working directory wins over the copy on the
+    // classpath, so the server finds its defaults from any directory. Null when there is neither.
+    static InputStream openConfig(String path, String name) throws IOException {
+        if (path != null) {
+            return new FileInputStream(path);
+        }
+        File file = new File(name);
+        if (file.isFile()) {
+            return new FileInputStream(file);
+        }
+        return BrowserRegistry.class.getResourceAsStream("/" + name);
+    }
+
+    public BrowserDescriptor get(String id) {
+        return id == null ? null : browsers.get(id);
+    }
+
+    public Collection<BrowserDescriptor> all() {
+        return browsers.values();
+    }
+}
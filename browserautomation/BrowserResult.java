@@ -0,0 +1,20 @@
+package browserautomation;
+
+// Browser result wrapper class
+class BrowserResult {
+    private int code;
+    private String status;
+
+    public BrowserResult(int code, String status) {
+        this.code = code;
+        this.status = status;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,266 @@
+package browserautomation;
+
+import java.util.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Browser state result class
+class BrowserStateResult {
+    private String serverStatus;
+    private String timestamp;
+    private Map<String, BrowserInstanceState> browserInstances;
+    private String osInfo;
+    private int totalActiveInstances;
+    private List<ExitedInstance> recentExits = new ArrayList<>();
+    private Map<String, Long> sessionEvictions = new TreeMap<>();
+    private long version;
+    // Delta responses only: the version asked for, instances new since then and instances gone since then
+    private long since = -1;
+    private Set<String> addedInstances = new HashSet<>();
+    private List<String> removedInstances = new ArrayList<>();
+
+    public BrowserStateResult() {
+        this.timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        this.browserInstances = new HashMap<>();
+        this.osInfo = System.getProperty("os.name") + " " + System.getProperty("os.version");
+        this.serverStatus = "running";
+        this.totalActiveInstances = 0;
+    }
+
+    public void addBrowserInstance(String browser, BrowserInstanceState state) {
+        browserInstances.put(browser, state);
+        if (state.isActive()) {
+            totalActiveInstances++;
+        }
+    }
+
+    public void addExitedInstance(ExitedInstance instance) {
+        recentExits.add(instance);
+    }
+
+    public void setSessionEvictions(Map<String, Long> sessionEvictions) {
+        this.sessionEvictions = new TreeMap<>(sessionEvictions);
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public void setSince(long since) {
+        this.since = since;
+    }
+
+    public boolean isDelta() {
+        return since >= 0;
+    }
+
+    public void markAdded(String browser) {
+        addedInstances.add(browser);
+    }
+
+    public void addRemovedInstance(String browser) {
+        removedInstances.add(browser);
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"serverStatus\": \"").append(serverStatus).append("\",\n");
+        json.append("  \"timestamp\": \"").append(timestamp).append("\",\n");
+        json.append("  \"version\": ").append(version).append(",\n");
+        if (isDelta()) {
+            json.append("  \"since\": ").append(since).append(",\n");
+            json.append("  \"added\": {\n");
+            appendInstancesJson(json, true);
+            json.append("\n  },\n");
+            json.append("  \"changed\": {\n");
+            appendInstancesJson(json, false);
+            json.append("\n  },\n");
+            json.append("  \"removed\": [");
+            for (int i = 0; i < removedInstances.size(); i++) {
+                json.append(i > 0 ? ", " : "").append("\"").append(removedInstances.get(i)).append("\"");
+            }
+            json.append("]\n}");
+            return json.toString();
+        }
+        json.append("  \"osInfo\": \"").append(osInfo).append("\",\n");
+        json.append("  \"totalActiveInstances\": ").append(totalActiveInstances).append(",\n");
+        json.append("  \"sessionEvictions\": {");
+        int evictionCount = 0;
+        for (Map.Entry<String, Long> eviction : sessionEvictions.entrySet()) {
+            json.append(evictionCount++ > 0 ? ", " : "").append("\"").append(eviction.getKey()).append("\": ")
+                    .append(eviction.getValue());
+        }
+        json.append("},\n");
+        json.append("  \"browserInstances\": {\n");
+        appendInstancesJson(json, null);
+        json.append("\n  },\n");
+        json.append("  \"recentExits\": [");
+        for (int i = 0; i < recentExits.size(); i++) {
+            ExitedInstance exited = recentExits.get(i);
+            json.append(i > 0 ? ",\n" : "\n");
+            json.append("    {\"browser\": \"").append(exited.getBrowser()).append("\", ");
+            json.append("\"processId\": ").append(exited.getProcessId()).append(", ");
+            json.append("\"startTime\": \"").append(exited.getStartTime()).append("\", ");
+            json.append("\"exitTime\": \"").append(exited.getExitTime()).append("\", ");
+            json.append("\"exitCode\": ").append(exited.getExitCode()).append(", ");
+            json.append("\"reason\": \"").append(exited.getReason()).append("\", ");
+            json.append("\"lastUrl\": \"").append(exited.getLastUrl()).append("\", ");
+            json.append("\"profile\": \"").append(exited.getProfile()).append("\"}");
+        }
+        json.append(recentExits.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}");
+        return json.toString();
+    }
+
+    // Instances as JSON members; added selects the delta's added (true) or changed (false) set, null for all
+    private void appendInstancesJson(StringBuilder json, Boolean added) {
+        int count = 0;
+        for (Map.Entry<String, BrowserInstanceState> entry : browserInstances.entrySet()) {
+            if (added != null && added != addedInstances.contains(entry.getKey())) {
+                continue;
+            }
+            if (count > 0)
+                json.append(",\n");
+            json.append("    \"").append(entry.getKey()).append("\": {\n");
+            json.append("      \"active\": ").append(entry.getValue().isActive()).append(",\n");
+            json.append("      \"processId\": ").append(entry.getValue().getProcessId()).append(",\n");
+            json.append("      \"startTime\": \"").append(entry.getValue().getStartTime()).append("\",\n");
+            json.append("      \"lastUrl\": \"").append(entry.getValue().getLastUrl()).append("\",\n");
+            json.append("      \"profile\": \"").append(entry.getValue().getProfile()).append("\",\n");
+            json.append("      \"tabs\": [");
+            List<BrowserTab> tabs = entry.getValue().getTabs();
+            for (int i = 0; i < tabs.size(); i++) {
+                if (i > 0)
+                    json.append(", ");
+                json.append("{\"id\": \"").append(tabs.get(i).getId()).append("\", \"url\": \"")
+                        .append(tabs.get(i).getUrl()).append("\"}");
+            }
+            json.append("],\n");
+            json.append("      \"profileBytes\": ").append(entry.getValue().getProfileBytes()).append(",\n");
+            json.append("      \"status\": \"").append(entry.getValue().getStatus()).append("\"\n");
+            json.append("    }");
+            count++;
+        }
+    }
+
+    // Same structure as toJson, encoded as CBOR
+    public byte[] toCbor() {
+        CborWriter cbor = new CborWriter();
+        cbor.writeMapHeader(isDelta() ? 7 : 8);
+        cbor.writeString("serverStatus").writeString(serverStatus);
+        cbor.writeString("timestamp").writeString(timestamp);
+        cbor.writeString("version").writeLong(version);
+        if (isDelta()) {
+            cbor.writeString("since").writeLong(since);
+            cbor.writeString("added");
+            writeInstancesCbor(cbor, true);
+            cbor.writeString("changed");
+            writeInstancesCbor(cbor, false);
+            cbor.writeString("removed").writeArrayHeader(removedInstances.size());
+            for (String browser : removedInstances) {
+                cbor.writeString(browser);
+            }
+            return cbor.toByteArray();
+        }
+        cbor.writeString("osInfo").writeString(osInfo);
+        cbor.writeString("totalActiveInstances").writeLong(totalActiveInstances);
+        cbor.writeString("sessionEvictions").writeMapHeader(sessionEvictions.size());
+        for (Map.Entry<String, Long> eviction : sessionEvictions.entrySet()) {
+            cbor.writeString(eviction.getKey()).writeLong(eviction.getValue());
+        }
+        cbor.writeString("browserInstances");
+        writeInstancesCbor(cbor, null);
+        cbor.writeString("recentExits").writeArrayHeader(recentExits.size());
+        for (ExitedInstance exited : recentExits) {
+            cbor.writeMapHeader(8);
+            cbor.writeString("browser").writeString(exited.getBrowser());
+            cbor.writeString("processId").writeLong(exited.getProcessId());
+            cbor.writeString("startTime").writeString(exited.getStartTime());
+            cbor.writeString("exitTime").writeString(exited.getExitTime());
+            cbor.writeString("exitCode").writeLong(exited.getExitCode());
+            cbor.writeString("reason").writeString(exited.getReason());
+            cbor.writeString("lastUrl").writeString(exited.getLastUrl());
+            cbor.writeString("profile").writeString(exited.getProfile());
+        }
+        return cbor.toByteArray();
+    }
+
+    private void writeInstancesCbor(CborWriter cbor, Boolean added) {
+        List<Map.Entry<String, BrowserInstanceState>> selected = new ArrayList<>();
+        for (Map.Entry<String, BrowserInstanceState> entry : browserInstances.entrySet()) {
+            if (added == null || added == addedInstances.contains(entry.getKey())) {
+                selected.add(entry);
+            }
+        }
+        cbor.writeMapHeader(selected.size());
+        for (Map.Entry<String, BrowserInstanceState> entry : selected) {
+            BrowserInstanceState state = entry.getValue();
+            cbor.writeString(entry.getKey()).writeMapHeader(8);
+            cbor.writeString("active").writeBoolean(state.isActive());
+            cbor.writeString("processId").writeString(state.getProcessId());
+            cbor.writeString("startTime").writeString(state.getStartTime());
+            cbor.writeString("lastUrl").writeString(state.getLastUrl());
+            cbor.writeString("profile").writeString(state.getProfile());
+            cbor.writeString("tabs").writeArrayHeader(state.getTabs().size());
+            for (BrowserTab tab : state.getTabs()) {
+                cbor.writeMapHeader(2);
+                cbor.writeString("id").writeString(tab.getId());
+                cbor.writeString("url").writeString(tab.getUrl());
+            }
+            cbor.writeString("profileBytes").writeLong(state.getProfileBytes());
+            cbor.writeString("status").writeString(state.getStatus());
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== Browser Automation Server State ===\n");
+        sb.append("Server Status: ").append(serverStatus).append("\n");
+        sb.append("Timestamp: ").append(timestamp).append("\n");
+        sb.append("Version: ").append(version).append("\n");
+        if (isDelta()) {
+            sb.append("Changes Since: ").append(since).append("\n\n");
+            for (Map.Entry<String, BrowserInstanceState> entry : browserInstances.entrySet()) {
+                sb.append(addedInstances.contains(entry.getKey()) ? "+ " : "~ ").append(entry.getKey())
+                        .append(": ").append(entry.getValue().getStatus()).append(", ")
+                        .append(entry.getValue().getLastUrl()).append("\n");
+            }
+            for (String browser : removedInstances) {
+                sb.append("- ").append(browser).append("\n");
+            }
+            return sb.toString();
+        }
+        sb.append("OS Info: ").append(osInfo).append("\n");
+        sb.append("Total Active Instances: ").append(totalActiveInstances).append("\n");
+        sb.append("Session Evictions: ").append(sessionEvictions).append("\n\n");
+
+        sb.append("Browser Instances:\n");
+        for (Map.Entry<String, BrowserInstanceState> entry : browserInstances.entrySet()) {
+            BrowserInstanceState state = entry.getValue();
+            sb.append("- ").append(entry.getKey()).append(":\n");
+            sb.append("  Active: ").append(state.isActive()).append("\n");
+            sb.append("  Process ID: ").append(state.getProcessId()).append("\n");
+            sb.append("  Start Time: ").append(state.getStartTime()).append("\n");
+            sb.append("  Last URL: ").append(state.getLastUrl()).append("\n");
+            sb.append("  Profile: ").append(state.getProfile()).append("\n");
+            sb.append("  Profile Bytes: ").append(state.getProfileBytes()).append("\n");
+            sb.append("  Tabs: ").append(state.getTabs().size()).append("\n");
+            for (BrowserTab tab : state.getTabs()) {
+                sb.append("    ").append(tab.getId()).append(" ").append(tab.getUrl()).append("\n");
+            }
+            sb.append("  Status: ").append(state.getStatus()).append("\n\n");
+        }
+
+        sb.append("Recent Exits:\n");
+        for (ExitedInstance exited : recentExits) {
+            sb.append("- ").append(exited.getBrowser()).append(" (pid ").append(exited.getProcessId())
+                    .append(") ").append(exited.getReason()).append(", exit code ").append(exited.getExitCode())
+                    .append(" at ").append(exited.getExitTime())
+                    .append(", last URL ").append(exited.getLastUrl()).append("\n");
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,20 @@
+package browserautomation;
+
+// Tab opened in a tracked browser instance; id is the DevTools target id when known
+class BrowserTab {
+    private String id;
+    private String url;
+
+    public BrowserTab(String id, String url) {
+        this.id = id;
+        this.url = url;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+}
@@ -0,0 +1,8 @@
+package browserautomation;
+
+// Profile cache eviction
+class CacheModule implements ServerModule {
+    public void register(Router.Builder routes) {
+        routes.route("/evict", BrowserAutomationServer.wrap("/evict", new BrowserAutomationServer.EvictHandler()));
+    }
+}
@@ -0,0 +1,79 @@
+package browserautomation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Minimal CBOR (RFC 8949) encoder for the state responses
+class CborWriter {
+    private ByteArrayOutputStream out = new ByteArrayOutputStream(512);
+
+    public CborWriter writeMapHeader(int size) {
+        writeHead(5, size);
+        return this;
+    }
+
+    public CborWriter writeArrayHeader(int size) {
+        writeHead(4, size);
+        return this;
+    }
+
+    public CborWriter writeString(String value) {
+        if (value == null) {
+            out.write(0xf6);
+            return this;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeHead(3, bytes.length);
+        out.write(bytes, 0, bytes.length);
+        return this;
+    }
+
+    public CborWriter writeLong(long value) {
+        if (value >= 0) {
+            writeHead(0, value);
+        } else {
+            writeHead(1, -1 - value);
+        }
+        return this;
+    }
+
+    // Append an already encoded CBOR data item
+    public CborWriter writeRaw(byte[] item) {
+        out.write(item, 0, item.length);
+        return this;
+    }
+
+    public CborWriter writeBoolean(boolean value) {
+        out.write(value ? 0xf5 : 0xf4);
+        return this;
+    }
+
+    public byte[] toByteArray() {
+        return out.toByteArray();
+    }
+
+    private void writeHead(int majorType, long value) {
+        int major = majorType << 5;
+        if (value < 24) {
+            out.write(major | (int) value);
+        } else if (value < 0x100) {
+            out.write(major | 24);
+            out.write((int) value);
+        } else if (value < 0x10000) {
+            out.write(major | 25);
+            writeBytes(value, 2);
+        } else if (value < 0x100000000L) {
+            out.write(major | 26);
+            writeBytes(value, 4);
+        } else {
+            out.write(major | 27);
+            writeBytes(value, 8);
+        }
+    }
+
+    private void writeBytes(long value, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            out.write((int) (value >>> (8 * i)) & 0xff);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package browserautomation;
+
+import java.io.*;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Coordinator that shards instances across worker nodes on a capacity weighted hash ring. Workers key their
+// instances by app or app:session, and so does the ring, so the sessions of one browser spread over the cluster.
+class ClusterCoordinator {
+    static final String[] ROUTES = { "/open", "/close", "/clear", "/current-page", "/getState" };
+    private static final int VIRTUAL_NODES_PER_SLOT = 16;
+    private static final long REFRESH_SECONDS = 5;
+
+    private List<WorkerNode> workers = new ArrayList<>();
+    private volatile TreeMap<Long, WorkerNode> ring = new TreeMap<>();
+    // Instances stay on the node they were opened on even when the ring is rebuilt, until the node stops reporting
+    // them on a /capacity poll (closed, exited or evicted on the worker)
+    private Map<String, Assignment> assignments = new ConcurrentHashMap<>();
+    private HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor();
+
+    static class Assignment {
+        WorkerNode worker;
+        long assignedNanos;
+
+        Assignment(WorkerNode worker, long assignedNanos) {
+            this.worker = worker;
+            this.assignedNanos = assignedNanos;
+        }
+    }
+
+    static class ForwardResult {
+        int code;
+        String contentType;
+        byte[] body;
+
+        ForwardResult(int code, String contentType, byte[] body) {
+            this.code = code;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        ForwardResult(int code, String contentType, String body) {
+            this(code, contentType, body.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public ClusterCoordinator(String workerList) {
+        for (String address : workerList.split(",")) {
+            if (!address.trim().isEmpty()) {
+                workers.add(new WorkerNode(address.trim()));
+            }
+        }
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("coordinator mode needs -Dworkers=host:port,...");
+        }
+        System.out.println("Coordinator workers: " + workerList);
+    }
+
+    public void start() {
+        refreshCapacity();
+        refresher.scheduleWithFixedDelay(this::refreshCapacity, REFRESH_SECONDS, REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    static String instanceKey(Map<String, String> params) {
+        return BrowserController.instanceKey(params.get("app"), params.get("session"));
+    }
+
+    // Poll every worker's /capacity in parallel, drop assignments the workers no longer report and rebuild the ring
+    void refreshCapacity() {
+        long pollStart = System.nanoTime();
+        List<CompletableFuture<Void>> polls = new ArrayList<>();
+        for (WorkerNode worker : workers) {
+            polls.add(client.sendAsync(request(worker, "/capacity", null), HttpResponse.BodyHandlers.ofString())
+                    .thenAccept(response -> {
+                        worker.setFreeCapacity(parseFree(response.body()));
+                        worker.setLiveInstances(parseInstances(response.body()));
+                        worker.setReachable(true);
+                    })
+                    .exceptionally(e -> {
+                        worker.setReachable(false);
+                        worker.setFreeCapacity(0);
+                        worker.setLiveInstances(Collections.emptySet());
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(polls.toArray(new CompletableFuture<?>[0])).join();
+        // Assignments made while the poll was running may not show up in its answer yet
+        assignments.entrySet().removeIf(entry -> entry.getValue().assignedNanos < pollStart
+                && !entry.getValue().worker.getLiveInstances().contains(entry.getKey()));
+        rebuildRing();
+    }
+
+    private void rebuildRing() {
+        TreeMap<Long, WorkerNode> newRing = new TreeMap<>();
+        boolean anyFree = false;
+        for (WorkerNode worker : workers) {
+            anyFree |= worker.isReachable() && worker.getFreeCapacity() > 0;
+        }
+        for (WorkerNode worker : workers) {
+            if (!worker.isReachable()) {
+                continue;
+            }
+            // When every node is full keep them all on the ring so requests still get a clear answer
+            int slots = anyFree ? worker.getFreeCapacity() : 1;
+            for (int i = 0; i < slots * VIRTUAL_NODES_PER_SLOT; i++) {
+                newRing.put(hash(worker.getAddress() + "#" + i), worker);
+            }
+        }
+        ring = newRing;
+    }
+
+    WorkerNode route(String instanceKey) {
+        Assignment assigned = assignments.get(instanceKey);
+        if (assigned != null) {
+            return assigned.worker;
+        }
+        TreeMap<Long, WorkerNode> current = ring;
+        if (current.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, WorkerNode> entry = current.ceilingEntry(hash(instanceKey));
+        return entry != null ? entry.getValue() : current.firstEntry().getValue();
+    }
+
+    public ForwardResult forward(String route, String rawQuery, String instanceKey) {
+        WorkerNode worker = route(instanceKey);
+        if (worker == null) {
+            return new ForwardResult(503, "text/plain", "no worker node available");
+        }
+        try {
+            HttpResponse<byte[]> response = client.send(request(worker, route, rawQuery),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if ("/open".equals(route)) {
+                assignments.put(instanceKey, new Assignment(worker, System.nanoTime()));
+            } else if ("/close".equals(route)) {
+                assignments.remove(instanceKey);
+            }
+            String contentType = response.headers().firstValue("Content-Type").orElse("text/plain");
+            return new ForwardResult(response.statusCode(), contentType, response.body());
+        } catch (HttpTimeoutException e) {
+            throw new DeadlineExceededException("no answer from worker " + worker.getAddress());
+        } catch (IOException e) {
+            worker.setReachable(false);
+            rebuildRing();
+            return new ForwardResult(502, "text/plain", "worker " + worker.getAddress() + " failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ForwardResult(502, "text/plain", "interrupted forwarding to " + worker.getAddress());
+        }
+    }
+
+    // Fetch /getState from every worker in parallel and combine the answers in the requested format (json, cbor or
+    // text). A node that is down or does not answer 200 is reported as unreachable rather than pasted in as is.
+    public ForwardResult aggregateState(String rawQuery, String format) {
+        Map<WorkerNode, CompletableFuture<byte[]>> pending = new LinkedHashMap<>();
+        for (WorkerNode worker : workers) {
+            pending.put(worker, client.sendAsync(request(worker, "/getState", rawQuery),
+                    HttpResponse.BodyHandlers.ofByteArray())
+                    .thenApply(response -> response.statusCode() == 200 ? response.body() : null)
+                    .exceptionally(e -> null));
+        }
+
+        if ("cbor".equals(format)) {
+            CborWriter cbor = new CborWriter();
+            cbor.writeMapHeader(2);
+            cbor.writeString("mode").writeString("coordinator");
+            cbor.writeString("nodes").writeMapHeader(pending.size());
+            for (Map.Entry<WorkerNode, CompletableFuture<byte[]>> entry : pending.entrySet()) {
+                byte[] body = entry.getValue().join();
+                cbor.writeString(entry.getKey().getAddress());
+                if (body != null) {
+                    // Each worker answered with one complete CBOR item, embedded as the node's value
+                    cbor.writeRaw(body);
+                } else {
+                    cbor.writeMapHeader(1).writeString("serverStatus").writeString("unreachable");
+                }
+            }
+            return new ForwardResult(200, "application/cbor", cbor.toByteArray());
+        }
+
+        boolean json = "json".equals(format);
+        StringBuilder out = new StringBuilder();
+        if (json) {
+            out.append("{\n  \"mode\": \"coordinator\",\n  \"nodes\": {\n");
+        }
+        int count = 0;
+        for (Map.Entry<WorkerNode, CompletableFuture<byte[]>> entry : pending.entrySet()) {
+            String address = entry.getKey().getAddress();
+            byte[] bytes = entry.getValue().join();
+            String body = bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+            if (json) {
+                if (count > 0)
+                    out.append(",\n");
+                out.append("    \"").append(address).append("\": ")
+                        .append(body != null ? body : "{\"serverStatus\": \"unreachable\"}");
+            } else {
+                out.append("### Node ").append(address).append("\n")
+                        .append(body != null ? body : "unreachable\n").append("\n");
+            }
+            count++;
+        }
+        if (json) {
+            out.append("\n  }\n}");
+        }
+        return new ForwardResult(200, json ? "application/json" : "text/plain", out.toString());
+    }
+
+    private HttpRequest request(WorkerNode worker, String path, String rawQuery) {
+        String uri = "http://" + worker.getAddress() + path + (rawQuery != null ? "?" + rawQuery : "");
+        long timeoutMillis = Math.max(1, Deadline.current().boundedMillis(30000));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(uri)).timeout(Duration.ofMillis(timeoutMillis))
+                .GET();
+        if (Deadline.current().isBounded()) {
+            builder.header("X-Request-Timeout", String.valueOf(timeoutMillis));
+        }
+        Span span = Tracer.current();
+        if (span != null) {
+            builder.header("traceparent", span.traceparent());
+        }
+        return builder.build();
+    }
+
+    private static int parseFree(String body) {
+        int index = body.indexOf("\"free\":");
+        if (index < 0) {
+            return 0;
+        }
+        int start = index + "\"free\":".length();
+        int end = start;
+        while (end < body.length() && (Character.isDigit(body.charAt(end)) || body.charAt(end) == ' ')) {
+            end++;
+        }
+        return Integer.parseInt(body.substring(start, end).trim());
+    }
+
+    private static Set<String> parseInstances(String body) {
+        Set<String> instances = new HashSet<>();
+        int index = body.indexOf("\"instances\":");
+        int start = body.indexOf('[', index);
+        int end = body.indexOf(']', start);
+        if (index < 0 || start < 0 || end < 0) {
+            return instances;
+        }
+        for (String item : body.substring(start + 1, end).split(",")) {
+            String name = item.trim().replace("\"", "");
+            if (!name.isEmpty()) {
+                instances.add(name);
+            }
+        }
+        return instances;
+    }
+
+    private static long hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+            long h = 0;
+            for (int i = 0; i < 8; i++) {
+                h = (h << 8) | (digest[i] & 0xff);
+            }
+            return h;
+        } catch (NoSuchAlgorithmException e) {
+            return key.hashCode();
+        }
+    }
+}
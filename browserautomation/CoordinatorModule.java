@@ -0,0 +1,11 @@
+package browserautomation;
+
+// Coordinator mode: the worker API forwarded to the owning worker node
+class CoordinatorModule implements ServerModule {
+    public void register(Router.Builder routes) {
+        for (String route : ClusterCoordinator.ROUTES) {
+            routes.route(route, BrowserAutomationServer.wrap(route,
+                    new BrowserAutomationServer.CoordinatorHandler(route)));
+        }
+    }
+}
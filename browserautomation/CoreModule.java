@@ -0,0 +1,13 @@
+package browserautomation;
+
+// Browser lifecycle routes, plus /capacity for the cluster coordinator
+class CoreModule implements ServerModule {
+    public void register(Router.Builder routes) {
+        routes.route("/open", BrowserAutomationServer.wrap("/open", new BrowserAutomationServer.OpenHandler()));
+        routes.route("/close", BrowserAutomationServer.wrap("/close", new BrowserAutomationServer.CloseHandler()));
+        routes.route("/clear", BrowserAutomationServer.wrap("/clear", new BrowserAutomationServer.ClearHandler()));
+        routes.route("/current-page", BrowserAutomationServer.wrap("/current-page",
+                new BrowserAutomationServer.CurrentPageHandler()));
+        routes.route("/capacity", new BrowserAutomationServer.CapacityHandler());
+    }
+}
@@ -0,0 +1,92 @@
+package browserautomation;
+
+import java.util.concurrent.TimeUnit;
+
+// Per-request deadline, thread local like the current span. Without one every wait is unbounded as before.
+class Deadline {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+
+    private long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    // Server side defaults in milliseconds; 0 means no deadline
+    static long defaultMillis(String route) {
+        switch (route) {
+            case "/current-page":
+            case "/getState":
+                return 5000;
+            case "/clear":
+                return 15000;
+            case "/evict":
+                return 30000;
+            case "/artifacts":
+                return 0;
+            default:
+                return 10000;
+        }
+    }
+
+    // Ceiling for a client requested timeout in milliseconds; 0 where the route has no server deadline either
+    static long maxMillis(String route) {
+        switch (route) {
+            case "/evict":
+                return 120000;
+            case "/artifacts":
+                return 0;
+            default:
+                return 60000;
+        }
+    }
+
+    static void start(long millis) {
+        CURRENT.set(millis > 0 ? new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis)) : NONE);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    static Deadline current() {
+        Deadline deadline = CURRENT.get();
+        return deadline != null ? deadline : NONE;
+    }
+
+    boolean isBounded() {
+        return this != NONE;
+    }
+
+    long remainingMillis() {
+        if (!isBounded()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    boolean expired() {
+        return isBounded() && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    void check(String partialStatus) {
+        if (expired()) {
+            throw new DeadlineExceededException(partialStatus);
+        }
+    }
+
+    // Remaining time capped at limitMillis
+    long boundedMillis(long limitMillis) {
+        return Math.min(limitMillis, remainingMillis());
+    }
+
+    // Wait for a child process within the deadline; kill it when time runs out
+    boolean waitFor(Process process, long limitMillis) throws InterruptedException {
+        if (process.waitFor(boundedMillis(limitMillis), TimeUnit.MILLISECONDS)) {
+            return true;
+        }
+        process.destroyForcibly();
+        return false;
+    }
+}
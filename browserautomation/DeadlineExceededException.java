@@ -0,0 +1,10 @@
+package browserautomation;
+
+// Thrown when a request runs past its deadline; the message says how far it got
+class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public DeadlineExceededException(String partialStatus) {
+        super(partialStatus);
+    }
+}
@@ -0,0 +1,57 @@
+package browserautomation;
+
+// Browser instance that has exited, kept in a bounded history
+class ExitedInstance {
+    private String browser;
+    private long processId;
+    private String startTime;
+    private String exitTime;
+    private int exitCode;
+    private String lastUrl;
+    private String profile;
+    private String reason;
+
+    public ExitedInstance(String browser, long processId, String startTime, String exitTime, int exitCode,
+            String lastUrl, String profile, String reason) {
+        this.browser = browser;
+        this.processId = processId;
+        this.startTime = startTime;
+        this.exitTime = exitTime;
+        this.exitCode = exitCode;
+        this.lastUrl = lastUrl;
+        this.profile = profile;
+        this.reason = reason;
+    }
+
+    public String getBrowser() {
+        return browser;
+    }
+
+    public long getProcessId() {
+        return processId;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public String getExitTime() {
+        return exitTime;
+    }
+
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    public String getLastUrl() {
+        return lastUrl;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,26 @@
+package browserautomation;
+
+import com.sun.net.httpserver.HttpHandler;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+
+// HTTP transport the route handlers are registered on
+interface HttpTransport {
+    void createContext(String path, HttpHandler handler);
+
+    void setExecutor(Executor executor);
+
+    void start() throws IOException;
+
+    // Stop accepting connections, then wait up to delaySeconds for in-flight exchanges before closing
+    void stop(int delaySeconds);
+
+    // Select the engine with -Dhttp.engine=jdk|nio
+    static HttpTransport create(String engine, InetSocketAddress address, int backlog) throws IOException {
+        if ("nio".equals(engine)) {
+            return new NioHttpTransport(address, backlog);
+        }
+        return new JdkHttpTransport(address, backlog);
+    }
+}
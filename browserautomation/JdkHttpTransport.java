@@ -0,0 +1,75 @@
+package browserautomation;
+
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Transport backed by com.sun.net.httpserver.HttpServer
+class JdkHttpTransport implements HttpTransport {
+    private HttpServer server;
+    private boolean executorSet;
+    private volatile boolean draining;
+    private AtomicInteger inFlight = new AtomicInteger();
+
+    public JdkHttpTransport(InetSocketAddress address, int backlog) throws IOException {
+        this.server = HttpServer.create(address, backlog);
+    }
+
+    public void createContext(String path, HttpHandler handler) {
+        server.createContext(path, exchange -> {
+            if (draining) {
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            handler.handle(exchange);
+        });
+    }
+
+    // Exchanges are counted from the moment they are handed to the executor, so stop() also waits for those
+    // still queued behind busy workers and returns as soon as all are done; HttpServer.stop waits out the delay
+    public void setExecutor(Executor executor) {
+        executorSet = true;
+        server.setExecutor(task -> {
+            inFlight.incrementAndGet();
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+        });
+    }
+
+    public void start() {
+        if (!executorSet) {
+            // HttpServer's default runs exchanges on its dispatcher thread
+            setExecutor(Runnable::run);
+        }
+        server.start();
+    }
+
+    public void stop(int delaySeconds) {
+        draining = true;
+        long drainEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(delaySeconds);
+        try {
+            while (inFlight.get() > 0 && System.nanoTime() < drainEnd) {
+                Thread.sleep(20);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+    }
+}
@@ -0,0 +1,99 @@
+package browserautomation;
+
+import java.util.*;
+
+// Named launch profile: extra argv, environment and resource hints applied on /open
+class LaunchProfile {
+    private String name;
+    private boolean headless;
+    private int windowWidth;
+    private int windowHeight;
+    private List<String> disabledFeatures = new ArrayList<>();
+    private int maxOldSpaceMb;
+    private int rendererProcessLimit;
+    private List<String> extraArgs = new ArrayList<>();
+    private Map<String, String> environment = new HashMap<>();
+
+    public LaunchProfile(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    // Browser specific flags for this profile, inserted before the url
+    public List<String> buildArgs(BrowserDescriptor browser) {
+        List<String> args = new ArrayList<>();
+        if (BrowserDescriptor.CHROMIUM.equals(browser.getFamily())) {
+            if (headless && !browser.isHeadlessOnly()) {
+                args.add("--headless=new");
+            }
+            if (windowWidth > 0 && windowHeight > 0) {
+                args.add("--window-size=" + windowWidth + "," + windowHeight);
+            }
+            if (!disabledFeatures.isEmpty()) {
+                args.add("--disable-features=" + String.join(",", disabledFeatures));
+            }
+            if (maxOldSpaceMb > 0) {
+                args.add("--js-flags=--max-old-space-size=" + maxOldSpaceMb);
+            }
+            if (rendererProcessLimit > 0) {
+                args.add("--renderer-process-limit=" + rendererProcessLimit);
+            }
+        } else if (BrowserDescriptor.FIREFOX.equals(browser.getFamily())) {
+            // Firefox has no command line equivalent for disabled features or memory hints
+            if (headless && !browser.isHeadlessOnly()) {
+                args.add("--headless");
+            }
+            if (windowWidth > 0 && windowHeight > 0) {
+                args.add("--width=" + windowWidth);
+                args.add("--height=" + windowHeight);
+            }
+        }
+        args.addAll(extraArgs);
+        return args;
+    }
+
+    // Build a profile from "profile.<name>.*" keys
+    static LaunchProfile fromProperties(String name, Properties props) {
+        String prefix = "profile." + name + ".";
+        LaunchProfile profile = new LaunchProfile(name);
+        profile.headless = Boolean.parseBoolean(props.getProperty(prefix + "headless", "false"));
+        String windowSize = props.getProperty(prefix + "windowSize");
+        if (windowSize != null) {
+            String[] size = windowSize.split("[x,]");
+            if (size.length == 2) {
+                profile.windowWidth = Integer.parseInt(size[0].trim());
+                profile.windowHeight = Integer.parseInt(size[1].trim());
+            }
+        }
+        profile.disabledFeatures = splitList(props.getProperty(prefix + "disableFeatures"), ",");
+        profile.maxOldSpaceMb = Integer.parseInt(props.getProperty(prefix + "maxOldSpaceMb", "0").trim());
+        profile.rendererProcessLimit = Integer.parseInt(props.getProperty(prefix + "rendererProcessLimit", "0").trim());
+        profile.extraArgs = splitList(props.getProperty(prefix + "args"), "\\s+");
+        String envPrefix = prefix + "env.";
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith(envPrefix)) {
+                profile.environment.put(key.substring(envPrefix.length()), props.getProperty(key));
+            }
+        }
+        return profile;
+    }
+
+    private static List<String> splitList(String value, String separator) {
+        List<String> items = new ArrayList<>();
+        if (value != null) {
+            for (String item : value.trim().split(separator)) {
+                if (!item.trim().isEmpty()) {
+                    items.add(item.trim());
+                }
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,54 @@
+package browserautomation;
+
+import java.io.*;
+import java.util.*;
+
+// Launch profiles loaded once from a properties file
+class LaunchProfileRegistry {
+    public static final String DEFAULT_PROFILE = "default";
+
+    private Map<String, LaunchProfile> profiles = new HashMap<>();
+
+    public LaunchProfileRegistry() {
+        profiles.put(DEFAULT_PROFILE, new LaunchProfile(DEFAULT_PROFILE));
+    }
+
+    // path is an explicit -Dlaunch.profiles file or null for the shipped defaults, looked up like the browsers
+    public static LaunchProfileRegistry load(String path) {
+        LaunchProfileRegistry registry = new LaunchProfileRegistry();
+        Properties props = new Properties();
+        try (InputStream in = BrowserRegistry.openConfig(path, "launch-profiles.properties")) {
+            if (in == null) {
+                System.out.println("No launch-profiles.properties found, using default profile only");
+                return registry;
+            }
+            props.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read launch profiles: " + e.getMessage(), e);
+        }
+
+        Set<String> names = new TreeSet<>();
+        for (String key : props.stringPropertyNames()) {
+            String[] parts = key.split("\\.", 3);
+            if (parts.length == 3 && "profile".equals(parts[0])) {
+                names.add(parts[1]);
+            }
+        }
+        for (String name : names) {
+            try {
+                registry.profiles.put(name, LaunchProfile.fromProperties(name, props));
+            } catch (NumberFormatException e) {
+                System.err.println("Skipping launch profile " + name + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Loaded launch profiles: " + registry.profiles.keySet());
+        return registry;
+    }
+
+    public LaunchProfile get(String name) {
+        if (name == null || name.isEmpty()) {
+            return profiles.get(DEFAULT_PROFILE);
+        }
+        return profiles.get(name);
+    }
+}
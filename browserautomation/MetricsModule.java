@@ -0,0 +1,8 @@
+package browserautomation;
+
+// Prometheus metrics of the controller
+class MetricsModule implements ServerModule {
+    public void register(Router.Builder routes) {
+        routes.route("/metrics", new BrowserAutomationServer.MetricsHandler());
+    }
+}
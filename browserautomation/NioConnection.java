@@ -0,0 +1,296 @@
+package browserautomation;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+// One client connection on the NIO engine. All fields are owned by the selector thread except
+// responseBuffer, which the handler thread fills while the connection is busy.
+class NioConnection {
+    private static final long FILE_CHUNK_BYTES = 4 * 1024 * 1024;
+    static final int FLUSH_THRESHOLD = 256 * 1024;
+    // Parsed requests waiting behind the one in progress; reading stops while the queue is full
+    static final int MAX_PIPELINED = Integer.getInteger("http.maxPipelined", 16);
+
+    private NioHttpTransport transport;
+    private SocketChannel channel;
+    SelectionKey key;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(8 * 1024);
+    private Deque<NioExchange> pending = new ArrayDeque<>();
+    private boolean busy;
+    private boolean closeAfterResponse;
+    private ByteBuffer writing;
+    private CompletableFuture<Void> flushed;
+    private FileChannel sendingFile;
+    private long filePosition;
+    private long fileRemaining;
+    ByteBuffer responseBuffer = ByteBuffer.allocateDirect(8 * 1024);
+    long lastActive = System.nanoTime();
+
+    NioConnection(NioHttpTransport transport, SocketChannel channel) {
+        this.transport = transport;
+        this.channel = channel;
+    }
+
+    boolean isIdle() {
+        return !busy && pending.isEmpty();
+    }
+
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(readBuffer);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (read < 0) {
+            close();
+            return;
+        }
+        lastActive = System.nanoTime();
+        parseRequests();
+        if (!channel.isOpen()) {
+            return;
+        }
+        if (!readBuffer.hasRemaining() && pending.size() < MAX_PIPELINED) {
+            if (readBuffer.capacity() >= NioHttpTransport.maxHeaderBytes() * 4) {
+                close();
+                return;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+        dispatchNext();
+        updateInterest();
+    }
+
+    // Read interest is dropped while the pipeline queue is full, so a client streaming requests is held back by
+    // TCP flow control instead of growing server memory
+    private void updateInterest() {
+        if (!key.isValid()) {
+            return;
+        }
+        int ops = pending.size() < MAX_PIPELINED ? SelectionKey.OP_READ : 0;
+        if (writing != null) {
+            ops |= SelectionKey.OP_WRITE;
+        }
+        key.interestOps(ops);
+    }
+
+    // Parse every complete request in the read buffer; pipelined requests queue up in order
+    private void parseRequests() {
+        while (pending.size() < MAX_PIPELINED && channel.isOpen()) {
+            int limit = readBuffer.position();
+            int headerEnd = indexOfHeaderEnd(readBuffer, limit);
+            if (headerEnd < 0) {
+                if (limit > NioHttpTransport.maxHeaderBytes()) {
+                    close();
+                }
+                return;
+            }
+            byte[] head = new byte[headerEnd];
+            for (int i = 0; i < headerEnd; i++) {
+                head[i] = readBuffer.get(i);
+            }
+            NioExchange exchange;
+            int bodyLength;
+            try {
+                exchange = NioExchange.parse(this, new String(head, StandardCharsets.ISO_8859_1));
+                bodyLength = exchange.getRequestContentLength();
+            } catch (IllegalArgumentException e) {
+                close();
+                return;
+            }
+            int bodyStart = headerEnd + 4;
+            if (limit - bodyStart < bodyLength) {
+                return;
+            }
+            byte[] body = new byte[bodyLength];
+            for (int i = 0; i < bodyLength; i++) {
+                body[i] = readBuffer.get(bodyStart + i);
+            }
+            exchange.setRequestBody(body);
+            readBuffer.flip();
+            readBuffer.position(bodyStart + bodyLength);
+            readBuffer.compact();
+            pending.add(exchange);
+        }
+    }
+
+    private static int indexOfHeaderEnd(ByteBuffer buffer, int limit) {
+        for (int i = 3; i < limit; i++) {
+            if (buffer.get(i) == '\n' && buffer.get(i - 1) == '\r' && buffer.get(i - 2) == '\n'
+                    && buffer.get(i - 3) == '\r') {
+                return i - 3;
+            }
+        }
+        return -1;
+    }
+
+    private void dispatchNext() {
+        if (busy || pending.isEmpty() || !channel.isOpen()) {
+            return;
+        }
+        busy = true;
+        NioExchange exchange = pending.poll();
+        responseBuffer.clear();
+        transport.dispatch(exchange);
+    }
+
+    // Called from the handler thread once the response is fully in responseBuffer
+    void responseReady(boolean keepAlive) {
+        responseReady(keepAlive, null, 0, 0);
+    }
+
+    // As above, followed by a file region sent with FileChannel.transferTo straight to the socket
+    void responseReady(boolean keepAlive, FileChannel file, long position, long count) {
+        transport.onSelector(() -> {
+            if (!keepAlive) {
+                closeAfterResponse = true;
+            }
+            sendingFile = file;
+            filePosition = position;
+            fileRemaining = count;
+            responseBuffer.flip();
+            writing = responseBuffer;
+            onWritable();
+        });
+    }
+
+    // Called from the handler thread to put a partly built response on the wire before it grows further
+    void flushResponse() throws IOException {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        transport.onSelector(() -> {
+            flushed = written;
+            responseBuffer.flip();
+            writing = responseBuffer;
+            onWritable();
+        });
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while flushing response");
+        } catch (ExecutionException e) {
+            throw new IOException("connection closed");
+        }
+        responseBuffer.clear();
+    }
+
+    void onWritable() {
+        if (writing == null) {
+            return;
+        }
+        try {
+            channel.write(writing);
+            if (!writing.hasRemaining() && sendingFile != null && fileRemaining > 0) {
+                long sent = sendingFile.transferTo(filePosition, Math.min(fileRemaining, FILE_CHUNK_BYTES), channel);
+                filePosition += sent;
+                fileRemaining -= sent;
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        lastActive = System.nanoTime();
+        if (writing.hasRemaining() || fileRemaining > 0) {
+            updateInterest();
+            return;
+        }
+        writing = null;
+        if (flushed != null) {
+            // Partial flush: the handler is still producing this response
+            updateInterest();
+            flushed.complete(null);
+            flushed = null;
+            return;
+        }
+        closeFile();
+        busy = false;
+        if (closeAfterResponse) {
+            close();
+            return;
+        }
+        // Requests left in the read buffer while the queue was full
+        parseRequests();
+        if (!channel.isOpen()) {
+            return;
+        }
+        dispatchNext();
+        updateInterest();
+    }
+
+    // Grow the direct response buffer, keeping what has been written so far
+    ByteBuffer ensureResponseCapacity(int extra) {
+        if (responseBuffer.remaining() < extra) {
+            int capacity = responseBuffer.capacity();
+            while (capacity - responseBuffer.position() < extra) {
+                capacity *= 2;
+            }
+            ByteBuffer larger = ByteBuffer.allocateDirect(capacity);
+            responseBuffer.flip();
+            larger.put(responseBuffer);
+            responseBuffer = larger;
+        }
+        return responseBuffer;
+    }
+
+    InetSocketAddress remoteAddress() {
+        try {
+            return (InetSocketAddress) channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    InetSocketAddress localAddress() {
+        try {
+            return (InetSocketAddress) channel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    NioHttpTransport transport() {
+        return transport;
+    }
+
+    void close() {
+        transport.removed(this);
+        if (key != null) {
+            key.cancel();
+        }
+        closeFile();
+        if (flushed != null) {
+            flushed.completeExceptionally(new IOException("connection closed"));
+            flushed = null;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ignore errors on close
+        }
+    }
+
+    private void closeFile() {
+        if (sendingFile != null) {
+            try {
+                sendingFile.close();
+            } catch (IOException e) {
+                // Ignore errors on close
+            }
+            sendingFile = null;
+            fileRemaining = 0;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package browserautomation;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpHandler;
+import java.util.*;
+
+// HttpContext for the NIO engine; only path and handler are meaningful
+class NioContext extends HttpContext {
+    private String path;
+    private HttpHandler handler;
+    private Map<String, Object> attributes = new HashMap<>();
+    private List<Filter> filters = new ArrayList<>();
+    private Authenticator authenticator;
+
+    NioContext(String path, HttpHandler handler) {
+        this.path = path;
+        this.handler = handler;
+    }
+
+    public HttpHandler getHandler() {
+        return handler;
+    }
+
+    public void setHandler(HttpHandler handler) {
+        this.handler = handler;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public HttpServer getServer() {
+        return null;
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    public List<Filter> getFilters() {
+        return filters;
+    }
+
+    public Authenticator setAuthenticator(Authenticator authenticator) {
+        Authenticator previous = this.authenticator;
+        this.authenticator = authenticator;
+        return previous;
+    }
+
+    public Authenticator getAuthenticator() {
+        return authenticator;
+    }
+}
@@ -0,0 +1,264 @@
+package browserautomation;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// HttpExchange implementation for the NIO engine so existing handlers run unchanged.
+// The response is written straight into the connection's direct buffer.
+class NioExchange extends HttpExchange {
+    private NioConnection connection;
+    private String method;
+    private URI requestURI;
+    private String protocol;
+    private Headers requestHeaders = new Headers();
+    private Headers responseHeaders = new Headers();
+    private InputStream requestBody = new ByteArrayInputStream(new byte[0]);
+    private NioContext context;
+    private Map<String, Object> attributes = new HashMap<>();
+    private OutputStream responseBody = new ResponseStream();
+    private int responseCode = -1;
+    private boolean chunked;
+    private boolean keepAlive;
+    private boolean completed;
+    private FileChannel file;
+    private long filePosition;
+    private long fileCount;
+
+    private NioExchange(NioConnection connection) {
+        this.connection = connection;
+    }
+
+    static NioExchange parse(NioConnection connection, String head) {
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3) {
+            throw new IllegalArgumentException("bad request line: " + lines[0]);
+        }
+        NioExchange exchange = new NioExchange(connection);
+        exchange.method = requestLine[0];
+        exchange.requestURI = URI.create(requestLine[1]);
+        exchange.protocol = requestLine[2];
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                exchange.requestHeaders.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+            }
+        }
+        String connectionHeader = exchange.requestHeaders.getFirst("Connection");
+        if (connection.transport().isDraining()) {
+            exchange.keepAlive = false;
+        } else if ("HTTP/1.1".equals(exchange.protocol)) {
+            exchange.keepAlive = !"close".equalsIgnoreCase(connectionHeader);
+        } else {
+            exchange.keepAlive = "keep-alive".equalsIgnoreCase(connectionHeader);
+        }
+        String path = exchange.requestURI.getPath();
+        exchange.context = connection.transport().findContext(path == null ? "/" : path);
+        return exchange;
+    }
+
+    // Rejects malformed, negative and oversized lengths, which close the connection
+    int getRequestContentLength() {
+        String length = requestHeaders.getFirst("Content-Length");
+        if (length == null) {
+            return 0;
+        }
+        int value = Integer.parseInt(length.trim());
+        if (value < 0 || value > NioHttpTransport.maxBodyBytes()) {
+            throw new IllegalArgumentException("invalid Content-Length: " + length);
+        }
+        return value;
+    }
+
+    void setRequestBody(byte[] body) {
+        this.requestBody = new ByteArrayInputStream(body);
+    }
+
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    public URI getRequestURI() {
+        return requestURI;
+    }
+
+    public String getRequestMethod() {
+        return method;
+    }
+
+    public NioContext getHttpContext() {
+        return context;
+    }
+
+    public void close() {
+        try {
+            responseBody.close();
+        } catch (IOException e) {
+            // Ignore errors on close
+        }
+    }
+
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    static String reasonPhrase(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 416: return "Range Not Satisfiable";
+            case 500: return "Internal Server Error";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            case 504: return "Gateway Timeout";
+            default:
+                // The status code carries the meaning; clients must not depend on the phrase
+                return code < 300 ? "OK" : code < 400 ? "Redirect" : code < 500 ? "Client Error" : "Server Error";
+        }
+    }
+
+    public void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("headers already sent");
+        }
+        responseCode = rCode;
+        StringBuilder head = new StringBuilder(128);
+        head.append("HTTP/1.1 ").append(rCode).append(' ').append(reasonPhrase(rCode)).append("\r\n");
+        for (Map.Entry<String, List<String>> header : responseHeaders.entrySet()) {
+            for (String value : header.getValue()) {
+                head.append(header.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        if (responseLength > 0) {
+            head.append("Content-Length: ").append(responseLength).append("\r\n");
+        } else if (responseLength == 0) {
+            chunked = true;
+            head.append("Transfer-Encoding: chunked\r\n");
+        } else {
+            head.append("Content-Length: 0\r\n");
+        }
+        head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n\r\n");
+        byte[] bytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        connection.ensureResponseCapacity(bytes.length).put(bytes);
+        if (responseLength < 0) {
+            complete();
+        }
+    }
+
+    public InetSocketAddress getRemoteAddress() {
+        return connection.remoteAddress();
+    }
+
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    public InetSocketAddress getLocalAddress() {
+        return connection.localAddress();
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            responseBody = o;
+        }
+    }
+
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    // Hand the response to the selector; a handler that never sent headers gets a 500
+    void complete() {
+        if (completed) {
+            return;
+        }
+        if (responseCode == -1) {
+            try {
+                sendResponseHeaders(500, -1);
+            } catch (IOException e) {
+                // Not reachable, headers were not sent
+            }
+            return;
+        }
+        if (chunked) {
+            connection.ensureResponseCapacity(5).put("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        completed = true;
+        connection.responseReady(keepAlive, file, filePosition, fileCount);
+    }
+
+    // Send count bytes of file as the response body without copying them through the heap.
+    // Headers must already be sent with a length of count; the file is closed once written.
+    void sendFile(FileChannel file, long position, long count) {
+        this.file = file;
+        this.filePosition = position;
+        this.fileCount = count;
+        complete();
+    }
+
+    private class ResponseStream extends OutputStream {
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (responseCode == -1) {
+                throw new IOException("response headers not sent");
+            }
+            if (len == 0) {
+                return;
+            }
+            int buffered = connection.responseBuffer.position();
+            if (buffered > 0 && buffered + len > NioConnection.FLUSH_THRESHOLD) {
+                connection.flushResponse();
+            }
+            if (chunked) {
+                byte[] size = (Integer.toHexString(len) + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+                ByteBuffer buffer = connection.ensureResponseCapacity(size.length + len + 2);
+                buffer.put(size).put(b, off, len).put((byte) '\r').put((byte) '\n');
+            } else {
+                connection.ensureResponseCapacity(len).put(b, off, len);
+            }
+        }
+
+        public void close() {
+            complete();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package browserautomation;
+
+import com.sun.net.httpserver.HttpHandler;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Selector based HTTP/1.1 engine with keep-alive and pipelining.
+// One selector thread does all socket IO, handlers run on the executor one request per connection at a time,
+// so pipelined responses go out in request order.
+class NioHttpTransport implements HttpTransport {
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+    // The read buffer stops growing at four times the header limit, so a larger body could never be read
+    private static final int MAX_BODY_BYTES = 3 * MAX_HEADER_BYTES;
+    private static final long KEEP_ALIVE_TIMEOUT_NANOS = TimeUnit.SECONDS
+            .toNanos(Long.getLong("http.keepAliveSeconds", 30));
+
+    private InetSocketAddress address;
+    private int backlog;
+    private List<NioContext> contexts = new ArrayList<>();
+    private Executor executor;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private volatile boolean draining;
+    private AtomicInteger inFlight = new AtomicInteger();
+    private Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private Set<NioConnection> connections = new HashSet<>();
+
+    public NioHttpTransport(InetSocketAddress address, int backlog) {
+        this.address = address;
+        this.backlog = backlog;
+    }
+
+    public void createContext(String path, HttpHandler handler) {
+        contexts.add(new NioContext(path, handler));
+        // Longest prefix first, matching HttpServer context resolution
+        contexts.sort((a, b) -> b.getPath().length() - a.getPath().length());
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public void start() throws IOException {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address, backlog);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "nio-http-selector");
+        selectorThread.start();
+    }
+
+    public void stop(int delaySeconds) {
+        draining = true;
+        onSelector(() -> {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                // Ignore errors on close
+            }
+        });
+        long drainEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(delaySeconds);
+        try {
+            while (inFlight.get() > 0 && System.nanoTime() < drainEnd) {
+                Thread.sleep(20);
+            }
+            running = false;
+            selector.wakeup();
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // While draining every response closes its connection
+    boolean isDraining() {
+        return draining;
+    }
+
+    // Run a task on the selector thread
+    void onSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    NioContext findContext(String path) {
+        for (NioContext context : contexts) {
+            if (path.startsWith(context.getPath())) {
+                return context;
+            }
+        }
+        return null;
+    }
+
+    void dispatch(NioExchange exchange) {
+        inFlight.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                NioContext context = exchange.getHttpContext();
+                if (context == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    context.getHandler().handle(exchange);
+                }
+            } catch (Throwable t) {
+                System.err.println("Handler error: " + t);
+            } finally {
+                exchange.complete();
+                inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    private void selectLoop() {
+        long lastSweep = System.nanoTime();
+        while (running) {
+            try {
+                selector.select(1000);
+                Runnable task;
+                while ((task = selectorTasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        NioConnection connection = (NioConnection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.onReadable();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.onWritable();
+                            }
+                        } catch (RuntimeException e) {
+                            // One bad connection must not take the selector thread and every other client down
+                            System.err.println("Connection error: " + e);
+                            connection.close();
+                        }
+                    }
+                }
+                long now = System.nanoTime();
+                if (now - lastSweep > TimeUnit.SECONDS.toNanos(1)) {
+                    closeIdle(now);
+                    lastSweep = now;
+                }
+            } catch (IOException e) {
+                System.err.println("Selector error: " + e.getMessage());
+            }
+        }
+        for (NioConnection connection : new ArrayList<>(connections)) {
+            connection.close();
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            // Ignore errors on shutdown
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            NioConnection connection = new NioConnection(this, channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+        }
+    }
+
+    private void closeIdle(long now) {
+        for (NioConnection connection : new ArrayList<>(connections)) {
+            if (connection.isIdle() && now - connection.lastActive > KEEP_ALIVE_TIMEOUT_NANOS) {
+                connection.close();
+            }
+        }
+    }
+
+    void removed(NioConnection connection) {
+        connections.remove(connection);
+    }
+
+    static int maxHeaderBytes() {
+        return MAX_HEADER_BYTES;
+    }
+
+    static int maxBodyBytes() {
+        return MAX_BODY_BYTES;
+    }
+}
@@ -0,0 +1,370 @@
+package browserautomation;
+
+import java.io.*;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+// Disk usage of browser profile and cache directories, kept current with a WatchService after one initial walk.
+// All walking happens on the watcher thread; a directory that appears later is picked up from its parent's
+// events, so readers only ever sum what is already known.
+class ProfileStorage {
+    static final Set<String> CACHE_DIR_NAMES = new HashSet<>(Arrays.asList(
+            "Cache", "Code Cache", "GPUCache", "ShaderCache", "GrShaderCache", "CacheStorage", "cache2"));
+    // A browser's usage has to move this far from what was last reported to count as a change
+    private static final long USAGE_STEP_BYTES = Long.getLong("state.profileBytesStep", 1024 * 1024);
+
+    // Per browser: directories that count towards usage, and directories that are cache through and through
+    private Map<String, List<Path>> dataRoots = new HashMap<>();
+    private Map<String, List<Path>> cacheRoots = new HashMap<>();
+    private Set<Path> trackedRoots = ConcurrentHashMap.newKeySet();
+    // Roots that do not exist yet, and the existing ancestors watched until they do; those ancestors' own files
+    // are not counted
+    private Set<Path> pendingRoots = ConcurrentHashMap.newKeySet();
+    private Set<Path> ancestorDirs = ConcurrentHashMap.newKeySet();
+    private Map<Path, Long> fileSizes = new HashMap<>();
+    private Map<Path, Long> rootTotals = new HashMap<>();
+    private Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private Map<String, Long> reportedUsage = new HashMap<>();
+    private Consumer<String> usageListener = browser -> { };
+    private WatchService watcher;
+
+    static class Eviction {
+        int files;
+        long bytes;
+        long remaining;
+    }
+
+    // usageListener is called with the browser id, on the watcher thread, whenever its usage moved by a step
+    static ProfileStorage forBrowsers(Collection<BrowserDescriptor> browsers, Consumer<String> usageListener) {
+        ProfileStorage storage = new ProfileStorage();
+        for (BrowserDescriptor browser : browsers) {
+            storage.addRoots(browser.getId(), browser.getDataDirs(), browser.getCacheDirs());
+        }
+        storage.usageListener = usageListener;
+        storage.start();
+        return storage;
+    }
+
+    // Cache roots count towards usage as well
+    void addRoots(String browser, List<Path> data, List<Path> cache) {
+        if (data.isEmpty() && cache.isEmpty()) {
+            return;
+        }
+        List<Path> roots = dataRoots.computeIfAbsent(browser, k -> new ArrayList<>());
+        for (Path root : data) {
+            roots.add(root.toAbsolutePath().normalize());
+        }
+        for (Path root : cache) {
+            roots.add(root.toAbsolutePath().normalize());
+            cacheRoots.computeIfAbsent(browser, k -> new ArrayList<>()).add(root.toAbsolutePath().normalize());
+        }
+    }
+
+    void start() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (IOException e) {
+            System.err.println("Profile size tracking disabled: " + e.getMessage());
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            for (List<Path> roots : dataRoots.values()) {
+                for (Path root : roots) {
+                    track(root);
+                }
+            }
+            watchLoop();
+        }, "profile-storage-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Bytes used by a browser's tracked directories, -1 when it has none. A directory that is still being walked
+    // or does not exist yet counts what has been seen so far.
+    public long getUsage(String browser) {
+        List<Path> roots = dataRoots.get(browser);
+        if (roots == null || watcher == null) {
+            return -1;
+        }
+        long total = 0;
+        synchronized (this) {
+            for (Path root : roots) {
+                total += rootTotals.getOrDefault(root, 0L);
+            }
+        }
+        return total;
+    }
+
+    // Delete cache files unused for olderThanMillis and/or oldest-first until usage is within maxBytes.
+    // Only cache files are touched, so this is safe while the browser keeps running.
+    public Eviction evict(String browser, long olderThanMillis, long maxBytes) {
+        Eviction eviction = new Eviction();
+        List<Path> roots = dataRoots.getOrDefault(browser, Collections.emptyList());
+
+        List<Path> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Path file : fileSizes.keySet()) {
+                if (isEvictable(browser, file)) {
+                    candidates.add(file);
+                }
+            }
+        }
+        Map<Path, Long> lastUse = new HashMap<>();
+        for (Path file : candidates) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                // Access time is not updated on noatime mounts, so take whichever is newer
+                lastUse.put(file, Math.max(attributes.lastAccessTime().toMillis(),
+                        attributes.lastModifiedTime().toMillis()));
+            } catch (IOException e) {
+                // Gone already
+            }
+        }
+        candidates.removeIf(file -> !lastUse.containsKey(file));
+        candidates.sort(Comparator.comparingLong(lastUse::get));
+
+        long usage = getUsage(browser);
+        long cutoff = olderThanMillis >= 0 ? System.currentTimeMillis() - olderThanMillis : Long.MIN_VALUE;
+        for (Path file : candidates) {
+            if (Deadline.current().expired()) {
+                break;
+            }
+            boolean expired = lastUse.get(file) < cutoff;
+            boolean overBudget = maxBytes >= 0 && usage > maxBytes;
+            // Oldest first, so once a file is neither expired nor needed for the budget we are done
+            if (!expired && !overBudget) {
+                break;
+            }
+            try {
+                long size = Files.size(file);
+                if (Files.deleteIfExists(file)) {
+                    account(file, -1);
+                    eviction.files++;
+                    eviction.bytes += size;
+                    usage -= size;
+                }
+            } catch (IOException e) {
+                // In use or already removed; skip it
+            }
+        }
+        eviction.remaining = roots.isEmpty() ? -1 : getUsage(browser);
+        return eviction;
+    }
+
+    private boolean isEvictable(String browser, Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith("index") || name.equalsIgnoreCase("lock") || name.equals("the-real-index")) {
+            return false;
+        }
+        for (Path cacheRoot : cacheRoots.getOrDefault(browser, Collections.emptyList())) {
+            if (file.startsWith(cacheRoot)) {
+                return true;
+            }
+        }
+        for (Path root : dataRoots.getOrDefault(browser, Collections.emptyList())) {
+            if (file.startsWith(root)) {
+                for (Path part : root.relativize(file)) {
+                    if (CACHE_DIR_NAMES.contains(part.toString())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // Watcher thread only: walk a root that exists, otherwise watch its nearest existing ancestor for creations
+    private void track(Path root) {
+        if (Files.isDirectory(root)) {
+            pendingRoots.remove(root);
+            if (trackedRoots.add(root)) {
+                walk(root);
+            }
+            return;
+        }
+        pendingRoots.add(root);
+        Path ancestor = root.getParent();
+        while (ancestor != null && !Files.isDirectory(ancestor)) {
+            ancestor = ancestor.getParent();
+        }
+        // Directories inside a tracked root are already watched for creations
+        if (ancestor == null || isTracked(ancestor) || !ancestorDirs.add(ancestor)) {
+            return;
+        }
+        try {
+            watchedDirs.put(ancestor.register(watcher, StandardWatchEventKinds.ENTRY_CREATE), ancestor);
+        } catch (IOException e) {
+            ancestorDirs.remove(ancestor);
+            System.err.println("Failed to watch " + ancestor + ": " + e.getMessage());
+        }
+    }
+
+    private boolean isTracked(Path dir) {
+        for (Path root : trackedRoots) {
+            if (dir.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // A tracked root that was deleted goes back to pending, so it is walked again once recreated
+    private void untrack(Path root) {
+        forgetTree(root);
+        synchronized (this) {
+            trackedRoots.remove(root);
+            rootTotals.remove(root);
+            reportUsage(root);
+        }
+        track(root);
+    }
+
+    // Register every directory under dir with the watcher and account for its files
+    private void walk(Path dir) {
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) throws IOException {
+                    WatchKey key = path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                    watchedDirs.put(key, path);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile()) {
+                        account(path, attrs.size());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path path, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Failed to walk " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(key);
+            boolean ancestorOnly = dir != null && !isTracked(dir);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (dir == null || ancestorOnly) {
+                    break;
+                }
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    rescan(dir);
+                    continue;
+                }
+                Path child = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    forgetTree(child);
+                } else if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        walk(child);
+                    }
+                } else {
+                    try {
+                        account(child, Files.size(child));
+                    } catch (IOException e) {
+                        account(child, -1);
+                    }
+                }
+            }
+            // Any creation may be a pending root or one of its ancestors
+            for (Path root : pendingRoots) {
+                track(root);
+            }
+            if (!key.reset()) {
+                watchedDirs.remove(key);
+                ancestorDirs.remove(dir);
+                if (dir != null && trackedRoots.contains(dir)) {
+                    untrack(dir);
+                }
+            }
+        }
+    }
+
+    // Events were dropped: recount the whole root the directory belongs to
+    private void rescan(Path dir) {
+        for (Path root : trackedRoots) {
+            if (dir.startsWith(root)) {
+                forgetTree(root);
+                walk(root);
+                return;
+            }
+        }
+    }
+
+    private synchronized void forgetTree(Path path) {
+        if (fileSizes.containsKey(path)) {
+            account(path, -1);
+            return;
+        }
+        List<Path> removed = new ArrayList<>();
+        for (Path file : fileSizes.keySet()) {
+            if (file.startsWith(path)) {
+                removed.add(file);
+            }
+        }
+        for (Path file : removed) {
+            account(file, -1);
+        }
+    }
+
+    // Record a file's new size, -1 when it no longer exists, and adjust its root's total by the difference
+    private synchronized void account(Path file, long size) {
+        Long previous = size < 0 ? fileSizes.remove(file) : fileSizes.put(file, size);
+        long delta = Math.max(size, 0) - (previous != null ? previous : 0);
+        if (delta == 0) {
+            return;
+        }
+        for (Path root : trackedRoots) {
+            if (file.startsWith(root)) {
+                rootTotals.merge(root, delta, Long::sum);
+                reportUsage(root);
+                return;
+            }
+        }
+    }
+
+    private synchronized void reportUsage(Path root) {
+        for (Map.Entry<String, List<Path>> entry : dataRoots.entrySet()) {
+            if (!entry.getValue().contains(root)) {
+                continue;
+            }
+            long usage = 0;
+            for (Path browserRoot : entry.getValue()) {
+                usage += rootTotals.getOrDefault(browserRoot, 0L);
+            }
+            if (Math.abs(usage - reportedUsage.getOrDefault(entry.getKey(), 0L)) >= USAGE_STEP_BYTES) {
+                reportedUsage.put(entry.getKey(), usage);
+                usageListener.accept(entry.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package browserautomation;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.*;
+import java.util.*;
+
+// Dispatch table from the first path segment to its handler, built once before the server starts. It is the
+// transport's only context, so each request is resolved with one HashMap lookup whichever engine is running.
+class Router implements HttpHandler {
+    private Map<String, HttpHandler> routes;
+    private HttpHandler fallback;
+
+    static class Builder {
+        private Map<String, HttpHandler> routes = new LinkedHashMap<>();
+        private HttpHandler fallback;
+
+        Builder(HttpHandler fallback) {
+            this.fallback = fallback;
+        }
+
+        // path is a single segment such as "/open"; it also serves everything below it
+        public Builder route(String path, HttpHandler handler) {
+            if (!path.startsWith("/") || path.indexOf('/', 1) >= 0) {
+                throw new IllegalArgumentException("route must be a single path segment: " + path);
+            }
+            if (routes.putIfAbsent(path, handler) != null) {
+                throw new IllegalStateException("route registered twice: " + path);
+            }
+            return this;
+        }
+
+        public Router build() {
+            return new Router(new HashMap<>(routes), fallback);
+        }
+    }
+
+    private Router(Map<String, HttpHandler> routes, HttpHandler fallback) {
+        this.routes = routes;
+        this.fallback = fallback;
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getRawPath();
+        HttpHandler handler = path == null ? null : routes.get(firstSegment(path));
+        (handler != null ? handler : fallback).handle(exchange);
+    }
+
+    static String firstSegment(String path) {
+        int end = path.indexOf('/', 1);
+        return end < 0 ? path : path.substring(0, end);
+    }
+
+    public Set<String> getPaths() {
+        return new TreeSet<>(routes.keySet());
+    }
+}
@@ -0,0 +1,6 @@
+package browserautomation;
+
+// A feature that contributes routes to the server
+interface ServerModule {
+    void register(Router.Builder routes);
+}
@@ -0,0 +1,93 @@
+package browserautomation;
+
+import java.util.*;
+
+// Span of work within a traced request; closing it ends it
+class Span implements AutoCloseable {
+    private TraceContext trace;
+    private String spanId;
+    private String parentSpanId;
+    private String name;
+    private boolean server;
+    private long startNanos;
+    private long endNanos;
+    private Map<String, String> attributes = new LinkedHashMap<>();
+    private String error;
+    private Span parent;
+
+    Span(TraceContext trace, String spanId, Span parent, String parentSpanId, String name, boolean server,
+            long startNanos) {
+        this.trace = trace;
+        this.spanId = spanId;
+        this.parent = parent;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.server = server;
+        this.startNanos = startNanos;
+    }
+
+    public Span setAttribute(String key, Object value) {
+        attributes.put(key, String.valueOf(value));
+        return this;
+    }
+
+    public Span setError(String message) {
+        this.error = message;
+        return this;
+    }
+
+    Span child(String childName) {
+        return new Span(trace, Tracer.randomHex(8), this, spanId, childName, false, System.nanoTime());
+    }
+
+    String getSpanId() {
+        return spanId;
+    }
+
+    public String traceparent() {
+        return "00-" + trace.traceId + "-" + spanId + "-" + (trace.sampled ? "01" : "00");
+    }
+
+    public void close() {
+        end(System.nanoTime());
+    }
+
+    void end(long nanos) {
+        if (endNanos != 0) {
+            return;
+        }
+        endNanos = nanos;
+        trace.finished.add(this);
+        if (Tracer.current() == this) {
+            Tracer.setCurrent(parent);
+        }
+        if (parent == null) {
+            Tracer.export(trace);
+        }
+    }
+
+    // One OTLP span object
+    void appendOtlpJson(StringBuilder json) {
+        json.append("{\"traceId\":\"").append(trace.traceId).append("\",\"spanId\":\"").append(spanId).append("\"");
+        if (parentSpanId != null) {
+            json.append(",\"parentSpanId\":\"").append(parentSpanId).append("\"");
+        }
+        json.append(",\"name\":\"").append(Tracer.escape(name)).append("\",\"kind\":").append(server ? 2 : 1);
+        json.append(",\"startTimeUnixNano\":\"").append(Tracer.epochNanos(startNanos)).append("\"");
+        json.append(",\"endTimeUnixNano\":\"").append(Tracer.epochNanos(endNanos)).append("\"");
+        json.append(",\"attributes\":[");
+        int count = 0;
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            json.append(count++ > 0 ? "," : "").append("{\"key\":\"").append(Tracer.escape(attribute.getKey()))
+                    .append("\",\"value\":{\"stringValue\":\"").append(Tracer.escape(attribute.getValue()))
+                    .append("\"}}");
+        }
+        json.append("],\"status\":");
+        if (error != null) {
+            json.append("{\"code\":2,\"message\":\"").append(Tracer.escape(error)).append("\"}");
+        } else {
+            json.append("{\"code\":1}");
+        }
+        json.append("}");
+    }
+}
@@ -0,0 +1,9 @@
+package browserautomation;
+
+// Versioned instance state with delta and CBOR responses
+class StateModule implements ServerModule {
+    public void register(Router.Builder routes) {
+        routes.route("/getState", BrowserAutomationServer.wrap("/getState",
+                new BrowserAutomationServer.GetStateHandler()));
+    }
+}
@@ -0,0 +1,15 @@
+package browserautomation;
+
+import java.util.*;
+
+// Spans of one request, exported together once the root span ends
+class TraceContext {
+    String traceId;
+    boolean sampled;
+    List<Span> finished = Collections.synchronizedList(new ArrayList<>());
+
+    TraceContext(String traceId, boolean sampled) {
+        this.traceId = traceId;
+        this.sampled = sampled;
+    }
+}
@@ -0,0 +1,105 @@
+package browserautomation;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Writes finished traces as OTLP-JSON lines, rotating file -> file.1 -> ... -> file.<maxFiles - 1>
+class TraceExporter {
+    private static final int QUEUE_CAPACITY = 10000;
+
+    private String path;
+    private long maxFileBytes;
+    private int maxFiles;
+    private BlockingQueue<TraceContext> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private Thread writerThread;
+
+    TraceExporter(String path, long maxFileBytes, int maxFiles) {
+        this.path = path;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    // Never blocks the request; traces are dropped when the writer falls behind
+    void enqueue(TraceContext trace) {
+        synchronized (this) {
+            if (writerThread == null) {
+                writerThread = new Thread(this::writeLoop, "trace-exporter");
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+        }
+        queue.offer(trace);
+    }
+
+    private void writeLoop() {
+        List<TraceContext> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            try {
+                write(batch);
+            } catch (IOException e) {
+                System.err.println("Trace export failed: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    // Write whatever is queued from the calling thread; used on shutdown
+    void flush() {
+        List<TraceContext> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        try {
+            write(batch);
+        } catch (IOException e) {
+            System.err.println("Trace export failed: " + e.getMessage());
+        }
+    }
+
+    private synchronized void write(List<TraceContext> batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (TraceContext trace : batch) {
+            lines.append("{\"resourceSpans\":[{\"resource\":{\"attributes\":[{\"key\":\"service.name\",")
+                    .append("\"value\":{\"stringValue\":\"browser-automation-server\"}}]},")
+                    .append("\"scopeSpans\":[{\"scope\":{\"name\":\"BrowserAutomationServer\"},\"spans\":[");
+            synchronized (trace.finished) {
+                for (int i = 0; i < trace.finished.size(); i++) {
+                    if (i > 0)
+                        lines.append(",");
+                    trace.finished.get(i).appendOtlpJson(lines);
+                }
+            }
+            lines.append("]}]}]}\n");
+        }
+        File file = new File(path);
+        if (file.length() > maxFileBytes) {
+            rotate();
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+            writer.write(lines.toString());
+        }
+    }
+
+    private void rotate() throws IOException {
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path source = Paths.get(i == 1 ? path : path + "." + (i - 1));
+            if (Files.exists(source)) {
+                Files.move(source, Paths.get(path + "." + i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package browserautomation;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Request tracing. The current span is thread local; sampled traces are written as OTLP-JSON lines
+// to a rotating file by a background thread.
+class Tracer {
+    private static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("trace.sampleRate", "0"));
+    private static final long EPOCH_OFFSET_NANOS = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+    private static final ThreadLocal<Span> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Long> QUEUED_AT = new ThreadLocal<>();
+    private static final Pattern TRACEPARENT = Pattern
+            .compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+    private static final TraceExporter EXPORTER = new TraceExporter(
+            System.getProperty("trace.file", "traces.jsonl"),
+            Long.getLong("trace.maxFileBytes", 64L * 1024 * 1024),
+            Integer.getInteger("trace.maxFiles", 5));
+
+    static Span current() {
+        return CURRENT.get();
+    }
+
+    static void setCurrent(Span span) {
+        if (span == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(span);
+        }
+    }
+
+    // Root span for an incoming request, continuing the caller's trace when a traceparent header is given.
+    // Time spent queued for a worker thread becomes a "queue" child span.
+    static Span startRequest(String name, String traceparent) {
+        String traceId = null;
+        String parentSpanId = null;
+        boolean sampled;
+        Matcher matcher = traceparent != null ? TRACEPARENT.matcher(traceparent.trim()) : null;
+        if (matcher != null && matcher.matches()) {
+            traceId = matcher.group(1);
+            parentSpanId = matcher.group(2);
+            sampled = (Integer.parseInt(matcher.group(3), 16) & 1) == 1;
+        } else {
+            sampled = SAMPLE_RATE > 0 && ThreadLocalRandom.current().nextDouble() < SAMPLE_RATE;
+        }
+        if (traceId == null) {
+            traceId = randomHex(16);
+        }
+
+        Long queuedAt = QUEUED_AT.get();
+        long now = System.nanoTime();
+        long start = queuedAt != null ? queuedAt : now;
+        TraceContext trace = new TraceContext(traceId, sampled);
+        Span root = new Span(trace, randomHex(8), null, parentSpanId, name, true, start);
+        setCurrent(root);
+        if (queuedAt != null) {
+            new Span(trace, randomHex(8), root, root.getSpanId(), "queue", false, queuedAt).end(now);
+        }
+        return root;
+    }
+
+    // Child of the current span; a detached no-op span when no request is being traced
+    static Span start(String name) {
+        Span parent = CURRENT.get();
+        if (parent == null) {
+            return new Span(new TraceContext(randomHex(16), false), randomHex(8), null, null, name, false,
+                    System.nanoTime());
+        }
+        Span span = parent.child(name);
+        setCurrent(span);
+        return span;
+    }
+
+    // Wrap the server executor so each task knows when it was queued
+    static Executor timingQueue(Executor executor) {
+        return task -> {
+            long queuedAt = System.nanoTime();
+            executor.execute(() -> {
+                QUEUED_AT.set(queuedAt);
+                try {
+                    task.run();
+                } finally {
+                    QUEUED_AT.remove();
+                }
+            });
+        };
+    }
+
+    static void flush() {
+        EXPORTER.flush();
+    }
+
+    static void export(TraceContext trace) {
+        if (trace.sampled) {
+            EXPORTER.enqueue(trace);
+        }
+    }
+
+    static long epochNanos(long nanoTime) {
+        return EPOCH_OFFSET_NANOS + nanoTime;
+    }
+
+    static String randomHex(int bytes) {
+        StringBuilder hex = new StringBuilder(bytes * 2);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < bytes; i++) {
+            hex.append(String.format("%02x", random.nextInt(256)));
+        }
+        return hex.toString();
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,44 @@
+package browserautomation;
+
+import java.util.*;
+
+// A worker node known to the coordinator
+class WorkerNode {
+    private String address;
+    private volatile int freeCapacity;
+    private volatile boolean reachable;
+    private volatile Set<String> liveInstances = Collections.emptySet();
+
+    public WorkerNode(String address) {
+        this.address = address;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public int getFreeCapacity() {
+        return freeCapacity;
+    }
+
+    public void setFreeCapacity(int freeCapacity) {
+        this.freeCapacity = freeCapacity;
+    }
+
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    // Instance keys the node reported as running on its last /capacity poll
+    public Set<String> getLiveInstances() {
+        return liveInstances;
+    }
+
+    public void setLiveInstances(Set<String> liveInstances) {
+        this.liveInstances = liveInstances;
+    }
+
+    public void setReachable(boolean reachable) {
+        this.reachable = reachable;
+    }
+}